@@ -0,0 +1,81 @@
+/* AddPdfMetaBenchmark.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+
+package cz.pecina.pdf.benchmarks;
+
+import cz.pecina.pdf.addpdfmeta.AddPdfMeta;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Benchmark of AddPdfMeta.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class AddPdfMetaBenchmark extends CorpusBenchmark {
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "AddPdfMetaBenchmark";
+  }
+
+  // metadata
+  private static final String METADATA =
+      "<?xpacket begin=\"\uFEFF\" id=\"W5M0MpCehiHzreSzNTczkc9d\"?>\n"
+      + "<x:xmpmeta xmlns:x=\"adobe:ns:meta/\">\n"
+      + "  <rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">\n"
+      + "    <rdf:Description rdf:about=\"\" xmlns:dc=\"http://purl.org/dc/elements/1.1/\">\n"
+      + "      <dc:title><rdf:Alt><rdf:li xml:lang=\"x-default\">Benchmark</rdf:li></rdf:Alt></dc:title>\n"
+      + "    </rdf:Description>\n"
+      + "  </rdf:RDF>\n"
+      + "</x:xmpmeta>\n"
+      + "<?xpacket end=\"w\"?>\n";
+
+  // name of the metadata file
+  private String metadataFileName;
+
+  // for description see CorpusBenchmark
+  @Override
+  protected void setUp() throws IOException {
+    metadataFileName = directory.resolve("metadata.xml").toString();
+    Files.write(directory.resolve("metadata.xml"), METADATA.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Adds metadata to the document.
+   *
+   * <p>The metadata file is read in each invocation, as the application
+   * does.
+   *
+   * @throws IOException on error
+   */
+  @Benchmark
+  public void add() throws IOException {
+    AddPdfMeta.addMetadata(inFileName, Files.readAllBytes(Paths.get(metadataFileName)), outFileName);
+  }
+}
@@ -0,0 +1,98 @@
+/* AddPdfStreamBenchmark.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+
+package cz.pecina.pdf.benchmarks;
+
+import com.itextpdf.kernel.pdf.CompressionConstants;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.StampingProperties;
+import cz.pecina.pdf.addpdfstream.AddPdfStream;
+import cz.pecina.pdf.util.IncrementalOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Benchmark of AddPdfStream.
+ *
+ * <p>A compressed stream is added, using one or more compression
+ * threads.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class AddPdfStreamBenchmark extends CorpusBenchmark {
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "AddPdfStreamBenchmark";
+  }
+
+  /**
+   * Size of the stream in bytes.
+   */
+  @Param("8388608")
+  protected long size;
+
+  /**
+   * Number of compression threads.
+   */
+  @Param({"1", "4"})
+  protected int threads;
+
+  // name of the stream file
+  private String streamFileName;
+
+  // for description see CorpusBenchmark
+  @Override
+  protected void setUp() throws IOException {
+    streamFileName = directory.resolve("stream.dat").toString();
+    CorpusGenerator.generateData(streamFileName, size, seed);
+  }
+
+  /**
+   * Adds the stream to the document.
+   *
+   * @throws IOException on error
+   * @throws GeneralSecurityException if MD5 is not available
+   */
+  @Benchmark
+  public void add() throws IOException, GeneralSecurityException {
+    try (PdfReader reader = new PdfReader(inFileName);
+        IncrementalOutputStream out = new IncrementalOutputStream(reader, inFileName, outFileName)) {
+      AddPdfStream.addStream(
+          new PdfDocument(reader, new PdfWriter(out), new StampingProperties().useAppendMode()),
+          streamFileName,
+          "Data",
+          "stream.dat",
+          Collections.emptyMap(),
+          CompressionConstants.DEFAULT_COMPRESSION,
+          threads);
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/* CdsTrainer.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+package cz.pecina.pdf.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+/**
+ * Trainer of class data sharing archives.
+ *
+ * <p>Each application is run once on the workload corpus with
+ * <code>-XX:ArchiveClassesAtExit</code>, which makes the JVM dump all
+ * application classes loaded during the run, together with the
+ * classes of the platform, to a dynamic archive named after the
+ * application.  The archive is only used by a JVM of the same build,
+ * started with the same class path, so the fat jar must be given by
+ * the absolute path the launcher uses, and the trainer must be run by
+ * the same Java runtime as the applications (JDK 13 or later).
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class CdsTrainer {
+
+  // static logger
+  private static final Logger log = Logger.getLogger(CdsTrainer.class.getName());
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "CdsTrainer";
+  }
+
+  // conversion factor
+  private static final long BYTES_PER_KB = 1024;
+
+  // options
+  private static final Options options = new Options();
+
+  static {
+    options.addOption(
+        Option.builder("?")
+        .longOpt("help")
+        .desc("show usage information")
+        .build());
+    options.addOption(
+        Option.builder("V")
+        .longOpt("version")
+        .desc("show version")
+        .build());
+  }
+
+  /**
+   * Prints usage information.
+   *
+   */
+  private static void usage() {
+    final HelpFormatter helpFormatter = new HelpFormatter();
+    helpFormatter.printHelp("cdstrainer [options] jarfile archivedir [application...]", options);
+    System.out.println("\nApplications: " + String.join(", ", Workload.getApplications()));
+    System.out.println("\nThe source code is available from <https://github.com/tompecina/pdf>.");
+  }
+
+  /**
+   * Trains the archive of one application.
+   *
+   * @param application the name of the application
+   * @param jarFileName the absolute name of the jar file
+   * @param archive     the archive file
+   * @param directory   the directory with the corpus
+   * @throws IOException          on error
+   * @throws InterruptedException if interrupted
+   */
+  public static void train(final String application, final String jarFileName, final Path archive, final Path directory)
+      throws IOException, InterruptedException {
+    Files.deleteIfExists(archive);
+    final List<String> command = Workload.getCommand(
+        application, jarFileName, Collections.singletonList("-XX:ArchiveClassesAtExit=" + archive), directory);
+    log.fine("Training command: " + command);
+    final Process process = new ProcessBuilder(command)
+        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+        .redirectError(ProcessBuilder.Redirect.INHERIT)
+        .start();
+    final int exitValue = process.waitFor();
+    if (exitValue != 0) {
+      throw new IOException("Training run failed, exit value: " + exitValue);
+    }
+    if (!Files.exists(archive)) {
+      throw new IOException("Archive not created");
+    }
+    log.fine("Archive created: " + archive);
+  }
+
+  /**
+   * Main method.
+   *
+   * @param args command-line arguments
+   */
+  public static void main(final String[] args) {
+    log.fine("Application started");
+
+    CommandLine line = null;
+    try {
+      line = new DefaultParser().parse(options, args);
+    } catch (final Exception exception) {
+      usage();
+      log.fine("Failed to parse the command line, exception: " + exception);
+      System.exit(1);
+    }
+
+    if (line.hasOption("?")) {
+      usage();
+      log.fine("Application terminated normally");
+      System.exit(0);
+    }
+
+    if (line.hasOption("V")) {
+      System.err.println("1.0.0");
+      log.fine("Application terminated normally");
+      System.exit(0);
+    }
+
+    final String[] fileNames = line.getArgs();
+    if (fileNames.length < 2) {
+      usage();
+      log.fine("Too few filenames");
+      System.exit(1);
+    }
+
+    final String jarFileName = Paths.get(fileNames[0]).toAbsolutePath().toString();
+    final Path archiveDirectory = Paths.get(fileNames[1]).toAbsolutePath();
+    final List<String> applications = (fileNames.length == 2)
+        ? Workload.getApplications() : Arrays.asList(fileNames).subList(2, fileNames.length);
+
+    Path directory = null;
+    int failed = 0;
+    try {
+      Files.createDirectories(archiveDirectory);
+      directory = Files.createTempDirectory("pdf-cds");
+      Workload.prepare(directory);
+      for (String application : applications) {
+        final Path archive = archiveDirectory.resolve(application + ".jsa");
+        try {
+          train(application, jarFileName, archive, directory);
+          System.out.printf("%s: OK, %d kB%n", application, Files.size(archive) / BYTES_PER_KB);
+        } catch (final IOException exception) {
+          failed++;
+          System.err.printf("%s: FAILED, exception: %s%n", application, exception);
+          log.fine("Training failed: " + application + ", exception: " + exception);
+        }
+      }
+    } catch (final Exception exception) {
+      System.err.println("Error training archives, exception: " + exception);
+      log.fine("Error training archives, exception: " + exception);
+      failed++;
+    } finally {
+      Workload.delete(directory);
+    }
+
+    if (failed > 0) {
+      System.exit(1);
+    }
+    log.fine("Application terminated normally");
+  }
+}
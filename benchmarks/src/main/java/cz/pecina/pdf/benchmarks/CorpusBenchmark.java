@@ -0,0 +1,165 @@
+/* CorpusBenchmark.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+
+package cz.pecina.pdf.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Base of benchmarks run on a generated document.
+ *
+ * <p>Before each trial, a document with the parameters of the trial is
+ * generated in a temporary directory, together with a key store for
+ * signing.  Each benchmark is measured both for throughput and for the
+ * distribution of the latency, from which the percentiles, including
+ * p99, are reported.  The allocation rate is reported if the benchmarks
+ * are run with the GC profiler (<code>-prof gc</code>).
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class CorpusBenchmark {
+
+  // static logger
+  private static final Logger log = Logger.getLogger(CorpusBenchmark.class.getName());
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "CorpusBenchmark";
+  }
+
+  /**
+   * Seed of the pseudo-random generator.
+   */
+  @Param("0")
+  protected long seed;
+
+  /**
+   * Number of pages.
+   */
+  @Param({"1", "50"})
+  protected int pages;
+
+  /**
+   * Number of images per page.
+   */
+  @Param({"0", "4"})
+  protected int images;
+
+  /**
+   * Number of content objects per page.
+   */
+  @Param("50")
+  protected int objects;
+
+  /**
+   * Number of signatures.
+   */
+  @Param("0")
+  protected int signatures;
+
+  /**
+   * Temporary directory.
+   */
+  protected Path directory;
+
+  /**
+   * Name of the generated document.
+   */
+  protected String inFileName;
+
+  /**
+   * Name of the output file.
+   */
+  protected String outFileName;
+
+  /**
+   * Name of the key store.
+   */
+  protected String keyStoreFileName;
+
+  /**
+   * Generates the document.
+   *
+   * @throws Exception on error
+   */
+  @Setup(Level.Trial)
+  public void setUpCorpus() throws Exception {
+    directory = Files.createTempDirectory("pdf-benchmarks");
+    keyStoreFileName = directory.resolve("keystore.p12").toString();
+    CorpusGenerator.generateKeyStore(keyStoreFileName, seed);
+    inFileName = directory.resolve("in.pdf").toString();
+    new CorpusGenerator(seed, pages, images, objects, signatures).generate(inFileName, keyStoreFileName);
+    outFileName = directory.resolve("out.pdf").toString();
+    log.fine("Corpus generated in: " + directory);
+    setUp();
+  }
+
+  /**
+   * Prepares the benchmark, after the document has been generated.
+   *
+   * @throws Exception on error
+   */
+  protected void setUp() throws Exception {
+  }
+
+  /**
+   * Deletes the temporary directory.
+   *
+   * @throws IOException on error
+   */
+  @TearDown(Level.Trial)
+  public void tearDownCorpus() throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(path);
+      }
+    }
+    log.fine("Corpus deleted");
+  }
+}
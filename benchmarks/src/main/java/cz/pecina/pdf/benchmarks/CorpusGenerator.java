@@ -0,0 +1,526 @@
+/* CorpusGenerator.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+
+package cz.pecina.pdf.benchmarks;
+
+import com.itextpdf.forms.PdfAcroForm;
+import com.itextpdf.forms.fields.PdfFormField;
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.io.image.ImageData;
+import com.itextpdf.io.image.ImageDataFactory;
+import com.itextpdf.kernel.colors.DeviceRgb;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfDocumentInfo;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfString;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.StampingProperties;
+import com.itextpdf.kernel.pdf.WriterProperties;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.signatures.BouncyCastleDigest;
+import com.itextpdf.signatures.DigestAlgorithms;
+import com.itextpdf.signatures.PdfSigner;
+import com.itextpdf.signatures.PrivateKeySignature;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.security.cert.Certificate;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.logging.Logger;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+/**
+ * Generator of the synthetic benchmark corpus.
+ *
+ * <p>A generated document has the given number of A4 pages, each of
+ * them with the given number of content objects (alternately lines of
+ * text and filled rectangles) and the given number of distinct images.
+ * The first page also carries the given number of signature fields,
+ * which are signed, one incremental update per signature, if a key
+ * store is supplied.  All positions, colors and pixels are drawn from
+ * a pseudo-random generator initialized with the seed, and all dates
+ * and the document ID are fixed, so that a given set of parameters
+ * always yields the same document.  The only exceptions are the
+ * modification dates and the document IDs of the signed revisions,
+ * which are set by iText.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class CorpusGenerator {
+
+  // static logger
+  private static final Logger log = Logger.getLogger(CorpusGenerator.class.getName());
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "CorpusGenerator";
+  }
+
+  // options
+  private static final Options options = new Options();
+
+  static {
+    options.addOption(
+        Option.builder("?")
+        .longOpt("help")
+        .desc("show usage information")
+        .build());
+    options.addOption(
+        Option.builder("V")
+        .longOpt("version")
+        .desc("show version")
+        .build());
+    options.addOption(
+        Option.builder("p")
+        .longOpt("pages")
+        .hasArg()
+        .type(Number.class)
+        .argName("NUMBER")
+        .desc("number of pages (default: 1)")
+        .build());
+    options.addOption(
+        Option.builder("i")
+        .longOpt("images")
+        .hasArg()
+        .type(Number.class)
+        .argName("NUMBER")
+        .desc("number of images per page (default: 0)")
+        .build());
+    options.addOption(
+        Option.builder("o")
+        .longOpt("objects")
+        .hasArg()
+        .type(Number.class)
+        .argName("NUMBER")
+        .desc("number of content objects per page (default: 0)")
+        .build());
+    options.addOption(
+        Option.builder("s")
+        .longOpt("signatures")
+        .hasArg()
+        .type(Number.class)
+        .argName("NUMBER")
+        .desc("number of signatures (default: 0)")
+        .build());
+    options.addOption(
+        Option.builder("r")
+        .longOpt("seed")
+        .hasArg()
+        .type(Number.class)
+        .argName("NUMBER")
+        .desc("seed of the pseudo-random generator (default: 0)")
+        .build());
+    options.addOption(
+        Option.builder("k")
+        .longOpt("keystore")
+        .hasArg()
+        .argName("FILE")
+        .desc("key store used for signatures, created if it does not exist")
+        .build());
+  }
+
+  /**
+   * Password of generated key stores.
+   */
+  public static final char[] PASSWORD = "benchmark".toCharArray();
+
+  // fixed date of generated documents and certificates
+  private static final String PDF_DATE = "D:20190101000000Z";
+  private static final Calendar DATE = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+
+  static {
+    DATE.clear();
+    DATE.set(2019, Calendar.JANUARY, 1);
+  }
+
+  // validity of generated certificates in years
+  private static final int VALIDITY = 100;
+
+  // size of generated keys in bits
+  private static final int KEY_SIZE = 2048;
+
+  // estimated size of signatures in bytes
+  private static final int SIGNATURE_SIZE = 8192;
+
+  // size of images in pixels
+  private static final int IMAGE_SIZE = 64;
+
+  // size of blocks of the same color in images, in pixels
+  private static final int BLOCK_SIZE = 4;
+
+  // number of color components
+  private static final int COMPONENTS = 3;
+
+  // number of bits per component
+  private static final int BITS_PER_COMPONENT = 8;
+
+  // mask of a color component
+  private static final int COMPONENT_MASK = 0xff;
+
+  // size of signature fields
+  private static final float FIELD_WIDTH = 100;
+  private static final float FIELD_HEIGHT = 40;
+
+  // margin of the page
+  private static final float MARGIN = 36;
+
+  // font size
+  private static final float FONT_SIZE = 9;
+
+  // number of words in a line of text
+  private static final int WORDS = 8;
+
+  // words used in the text
+  private static final String[] VOCABULARY = {
+    "lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit", "sed", "do",
+    "eiusmod", "tempor", "incididunt", "ut", "labore", "et", "dolore", "magna", "aliqua"
+  };
+
+  // parameters
+  private final long seed;
+  private final int pages;
+  private final int images;
+  private final int objects;
+  private final int signatures;
+
+  /**
+   * Creates the generator.
+   *
+   * @param seed       the seed of the pseudo-random generator
+   * @param pages      the number of pages
+   * @param images     the number of images per page
+   * @param objects    the number of content objects per page
+   * @param signatures the number of signatures
+   */
+  public CorpusGenerator(final long seed, final int pages, final int images, final int objects, final int signatures) {
+    if ((pages < 1) || (images < 0) || (objects < 0) || (signatures < 0)) {
+      throw new IllegalArgumentException("Invalid corpus parameters");
+    }
+    this.seed = seed;
+    this.pages = pages;
+    this.images = images;
+    this.objects = objects;
+    this.signatures = signatures;
+  }
+
+  /**
+   * Generates a document.
+   *
+   * @param fileName         the file name
+   * @param keyStoreFileName the key store used for signatures, may be null if there are no signatures
+   * @throws IOException              on error
+   * @throws GeneralSecurityException on error in signing
+   */
+  public void generate(final String fileName, final String keyStoreFileName)
+      throws IOException, GeneralSecurityException {
+    if ((signatures > 0) && (keyStoreFileName == null)) {
+      throw new IllegalArgumentException("Key store required for signatures");
+    }
+    byte[] data = createDocument();
+    for (int signature = 1; signature <= signatures; signature++) {
+      data = sign(data, keyStoreFileName, "Signature" + signature);
+    }
+    Files.write(Paths.get(fileName), data);
+    log.fine("Document generated: " + fileName);
+  }
+
+  // creates an unsigned document
+  private byte[] createDocument() throws IOException {
+    final Random random = new Random(seed);
+    final PdfString id = new PdfString(String.format("%016x%08x", seed, pages)).setHexWriting(true);
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (PdfDocument pdfDocument = new PdfDocument(new PdfWriter(
+        outputStream, new WriterProperties().setInitialDocumentId(id).setModifiedDocumentId(id)))) {
+      final PdfDocumentInfo info = pdfDocument.getDocumentInfo();
+      info.setTitle(String.format("Benchmark corpus %d/%d/%d/%d/%d", seed, pages, images, objects, signatures));
+      info.setMoreInfo("CreationDate", PDF_DATE);
+      info.setMoreInfo("ModDate", PDF_DATE);
+      final PdfFont font = PdfFontFactory.createFont(StandardFonts.HELVETICA);
+      for (int pageNumber = 1; pageNumber <= pages; pageNumber++) {
+        final PdfPage page = pdfDocument.addNewPage(PageSize.A4);
+        final PdfCanvas canvas = new PdfCanvas(page);
+        for (int object = 0; object < objects; object++) {
+          addObject(canvas, font, random, (object % 2) == 0);
+        }
+        for (int image = 0; image < images; image++) {
+          final float x = MARGIN + (random.nextFloat() * (PageSize.A4.getWidth() - (2 * MARGIN) - IMAGE_SIZE));
+          final float y = MARGIN + (random.nextFloat() * (PageSize.A4.getHeight() - (2 * MARGIN) - IMAGE_SIZE));
+          canvas.addImage(createImage(random), new Rectangle(x, y, IMAGE_SIZE, IMAGE_SIZE), false);
+        }
+        canvas.release();
+      }
+      if (signatures > 0) {
+        final PdfAcroForm acroForm = PdfAcroForm.getAcroForm(pdfDocument, true);
+        final PdfPage page = pdfDocument.getFirstPage();
+        for (int signature = 1; signature <= signatures; signature++) {
+          final float x = MARGIN + (((signature - 1) % 4) * (FIELD_WIDTH + MARGIN));
+          final float y = MARGIN + (((signature - 1) / 4) * (FIELD_HEIGHT + MARGIN));
+          final PdfFormField field =
+              PdfFormField.createSignature(pdfDocument, new Rectangle(x, y, FIELD_WIDTH, FIELD_HEIGHT));
+          field.setFieldName("Signature" + signature);
+          acroForm.addField(field, page);
+        }
+      }
+    }
+    return outputStream.toByteArray();
+  }
+
+  // adds a content object to a page
+  private static void addObject(final PdfCanvas canvas, final PdfFont font, final Random random, final boolean text) {
+    final float x = MARGIN + (random.nextFloat() * (PageSize.A4.getWidth() - (2 * MARGIN)) / 2);
+    final float y = MARGIN + (random.nextFloat() * (PageSize.A4.getHeight() - (2 * MARGIN)));
+    final int rgb = random.nextInt();
+    canvas.setFillColor(new DeviceRgb(
+        (rgb >> (2 * BITS_PER_COMPONENT)) & COMPONENT_MASK,
+        (rgb >> BITS_PER_COMPONENT) & COMPONENT_MASK,
+        rgb & COMPONENT_MASK));
+    if (text) {
+      final StringBuilder line = new StringBuilder();
+      for (int word = 0; word < WORDS; word++) {
+        if (word > 0) {
+          line.append(' ');
+        }
+        line.append(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+      }
+      canvas.beginText().setFontAndSize(font, FONT_SIZE).moveText(x, y).showText(line.toString()).endText();
+    } else {
+      canvas.rectangle(x, y, random.nextFloat() * MARGIN, random.nextFloat() * MARGIN).fill();
+    }
+  }
+
+  // creates an image consisting of blocks of random colors
+  private static ImageData createImage(final Random random) {
+    final byte[] pixels = new byte[IMAGE_SIZE * IMAGE_SIZE * COMPONENTS];
+    for (int blockY = 0; blockY < IMAGE_SIZE; blockY += BLOCK_SIZE) {
+      for (int blockX = 0; blockX < IMAGE_SIZE; blockX += BLOCK_SIZE) {
+        final int rgb = random.nextInt();
+        for (int y = blockY; y < (blockY + BLOCK_SIZE); y++) {
+          for (int x = blockX; x < (blockX + BLOCK_SIZE); x++) {
+            for (int component = 0; component < COMPONENTS; component++) {
+              pixels[(((y * IMAGE_SIZE) + x) * COMPONENTS) + component] =
+                  (byte) (rgb >> (component * BITS_PER_COMPONENT));
+            }
+          }
+        }
+      }
+    }
+    return ImageDataFactory.create(IMAGE_SIZE, IMAGE_SIZE, COMPONENTS, BITS_PER_COMPONENT, pixels, null);
+  }
+
+  // signs a field of a document
+  private static byte[] sign(final byte[] data, final String keyStoreFileName, final String fieldName)
+      throws IOException, GeneralSecurityException {
+    final BouncyCastleProvider provider = new BouncyCastleProvider();
+    Security.addProvider(provider);
+    final KeyStore keyStore = KeyStore.getInstance("pkcs12");
+    keyStore.load(Files.newInputStream(Paths.get(keyStoreFileName)), PASSWORD);
+    final String alias = keyStore.aliases().nextElement();
+    final PrivateKey key = (PrivateKey) keyStore.getKey(alias, PASSWORD);
+    final Certificate[] chain = keyStore.getCertificateChain(alias);
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    final PdfSigner signer = new PdfSigner(
+        new PdfReader(new ByteArrayInputStream(data)), outputStream, new StampingProperties().useAppendMode());
+    signer.setFieldName(fieldName);
+    signer.setSignDate((Calendar) DATE.clone());
+    signer.signDetached(new BouncyCastleDigest(), new PrivateKeySignature(key, DigestAlgorithms.SHA256, provider.getName()),
+        chain, null, null, null, SIGNATURE_SIZE, PdfSigner.CryptoStandard.CMS);
+    log.fine("Field signed: " + fieldName);
+    return outputStream.toByteArray();
+  }
+
+  /**
+   * Generates a PKCS#12 key store with a self-signed certificate.
+   *
+   * <p>The key pair is derived from the seed, so that signatures made
+   * with the key store are reproducible.  The password is {@link
+   * #PASSWORD}.
+   *
+   * @param fileName the file name
+   * @param seed     the seed of the pseudo-random generator
+   * @throws IOException              on error
+   * @throws GeneralSecurityException on error in key generation
+   */
+  public static void generateKeyStore(final String fileName, final long seed)
+      throws IOException, GeneralSecurityException {
+    final SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+    random.setSeed(seed);
+    final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(KEY_SIZE, random);
+    final KeyPair keyPair = generator.generateKeyPair();
+    final X500Name name = new X500Name("CN=Benchmark");
+    final Date notBefore = DATE.getTime();
+    final Calendar notAfter = (Calendar) DATE.clone();
+    notAfter.add(Calendar.YEAR, VALIDITY);
+    final Certificate certificate;
+    try {
+      certificate = new JcaX509CertificateConverter().getCertificate(
+          new JcaX509v3CertificateBuilder(
+              name, BigInteger.valueOf(seed).abs(), notBefore, notAfter.getTime(), name, keyPair.getPublic())
+          .build(new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate())));
+    } catch (final OperatorCreationException exception) {
+      throw new GeneralSecurityException(exception);
+    }
+    final KeyStore keyStore = KeyStore.getInstance("pkcs12");
+    keyStore.load(null, null);
+    keyStore.setKeyEntry("benchmark", keyPair.getPrivate(), PASSWORD, new Certificate[] {certificate});
+    try (OutputStream outputStream = Files.newOutputStream(Paths.get(fileName))) {
+      keyStore.store(outputStream, PASSWORD);
+    }
+    log.fine("Key store generated: " + fileName);
+  }
+
+  /**
+   * Generates a data file of text-like, moderately compressible data.
+   *
+   * @param fileName the file name
+   * @param size     the size of the file in bytes
+   * @param seed     the seed of the pseudo-random generator
+   * @throws IOException on error
+   */
+  public static void generateData(final String fileName, final long size, final long seed) throws IOException {
+    final Random random = new Random(seed);
+    try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(Paths.get(fileName)))) {
+      long written = 0;
+      while (written < size) {
+        final byte[] word = (VOCABULARY[random.nextInt(VOCABULARY.length)] + (random.nextInt(WORDS) == 0 ? "\n" : " "))
+            .getBytes(StandardCharsets.US_ASCII);
+        final int length = (int) Math.min(word.length, size - written);
+        outputStream.write(word, 0, length);
+        written += length;
+      }
+    }
+    log.fine("Data file generated: " + fileName);
+  }
+
+  /**
+   * Prints usage information.
+   *
+   */
+  private static void usage() {
+    final HelpFormatter helpFormatter = new HelpFormatter();
+    helpFormatter.printHelp("corpusgenerator [options] outfile", options);
+    System.out.println("\nThe source code is available from <https://github.com/tompecina/pdf>.");
+  }
+
+  // gets an optional numeric option
+  private static int getNumber(final CommandLine line, final String option, final int defaultValue) throws Exception {
+    return line.hasOption(option) ? ((Number) line.getParsedOptionValue(option)).intValue() : defaultValue;
+  }
+
+  /**
+   * Main method.
+   *
+   * @param args command-line arguments
+   */
+  public static void main(final String[] args) {
+    log.fine("Application started");
+
+    CommandLine line = null;
+    try {
+      line = new DefaultParser().parse(options, args);
+    } catch (final Exception exception) {
+      usage();
+      log.fine("Failed to parse the command line, exception: " + exception);
+      System.exit(1);
+    }
+
+    if (line.hasOption("?")) {
+      usage();
+      log.fine("Application terminated normally");
+      System.exit(0);
+    }
+
+    if (line.hasOption("V")) {
+      System.err.println("1.0.0");
+      log.fine("Application terminated normally");
+      System.exit(0);
+    }
+
+    final String[] fileNames = line.getArgs();
+    if (fileNames.length != 1) {
+      usage();
+      log.fine("Too few or too many filenames");
+      System.exit(1);
+    }
+
+    CorpusGenerator generator = null;
+    long seed = 0;
+    try {
+      seed = line.hasOption("r") ? ((Number) line.getParsedOptionValue("r")).longValue() : 0;
+      generator = new CorpusGenerator(
+          seed, getNumber(line, "p", 1), getNumber(line, "i", 0), getNumber(line, "o", 0), getNumber(line, "s", 0));
+    } catch (final Exception exception) {
+      System.err.println("Error in parameters, exception: " + exception);
+      log.fine("Failed to parse parameters, exception: " + exception);
+      System.exit(1);
+    }
+
+    final String keyStoreFileName = line.getOptionValue("k");
+    try {
+      if ((keyStoreFileName != null) && !Files.exists(Paths.get(keyStoreFileName))) {
+        generateKeyStore(keyStoreFileName, seed);
+      }
+      generator.generate(fileNames[0], keyStoreFileName);
+    } catch (final Exception exception) {
+      System.err.println("Error generating corpus, exception: " + exception);
+      log.fine("Error generating corpus, exception: " + exception);
+      System.exit(1);
+    }
+
+    log.fine("Application terminated normally");
+  }
+}
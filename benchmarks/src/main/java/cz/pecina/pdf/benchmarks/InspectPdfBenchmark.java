@@ -0,0 +1,75 @@
+/* InspectPdfBenchmark.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+
+package cz.pecina.pdf.benchmarks;
+
+import cz.pecina.pdf.inspectpdf.InspectPdf;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmark of InspectPdf.
+ *
+ * <p>The metadata and the list of objects are printed; the standard
+ * output is discarded while the benchmark is running.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class InspectPdfBenchmark extends CorpusBenchmark {
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "InspectPdfBenchmark";
+  }
+
+  // original standard output
+  private PrintStream out;
+
+  // for description see CorpusBenchmark
+  @Override
+  protected void setUp() {
+    out = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+  }
+
+  /**
+   * Restores the standard output.
+   */
+  @TearDown(Level.Trial)
+  public void restoreOutput() {
+    System.setOut(out);
+  }
+
+  /**
+   * Inspects the document.
+   */
+  @Benchmark
+  public void inspect() {
+    InspectPdf.main(new String[] {"-m", "-o", inFileName});
+  }
+}
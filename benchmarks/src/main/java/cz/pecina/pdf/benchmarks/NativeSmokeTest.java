@@ -0,0 +1,271 @@
+/* NativeSmokeTest.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+package cz.pecina.pdf.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+/**
+ * Smoke test of the native executables.
+ *
+ * <p>Each application is run on the workload corpus both from the jar
+ * and as a native executable, and the outputs are compared byte by
+ * byte.  The time of signing, which is also shown in the appearance
+ * of the signature, is fixed by the workload with
+ * <code>--sign-date</code>.  The other values that differ from run to
+ * run even in the same runtime, i.e., the creation and modification
+ * dates, the document IDs, the signatures and the tags of font
+ * subsets, are masked before the comparison; the masked values keep
+ * their lengths, so that any difference in the structure of the
+ * output, including the cross-reference offsets, is detected.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class NativeSmokeTest {
+
+  // static logger
+  private static final Logger log = Logger.getLogger(NativeSmokeTest.class.getName());
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "NativeSmokeTest";
+  }
+
+  // options
+  private static final Options options = new Options();
+
+  static {
+    options.addOption(
+        Option.builder("?")
+        .longOpt("help")
+        .desc("show usage information")
+        .build());
+    options.addOption(
+        Option.builder("V")
+        .longOpt("version")
+        .desc("show version")
+        .build());
+  }
+
+  // variable values, the first group of each pattern is masked
+  private static final Pattern[] VARIABLE_VALUES = {
+    Pattern.compile("/(?:CreationDate|ModDate|M)\\s*\\((D:[^)]*)\\)"),
+    Pattern.compile("/ID\\s*\\[\\s*(<[0-9A-Fa-f]*>\\s*<[0-9A-Fa-f]*>)\\s*\\]"),
+    Pattern.compile("/Contents\\s*<([0-9A-Fa-f]*)>"),
+    Pattern.compile("/(?:FontName|BaseFont)\\s*/([A-Z]{6})\\+"),
+    Pattern.compile("(?:CreateDate|ModifyDate|MetadataDate|InstanceID|DocumentID)(?:>|=\")([^<\"]*)")
+  };
+
+  // mask character
+  private static final char MASK = '#';
+
+  /**
+   * Prints usage information.
+   *
+   */
+  private static void usage() {
+    final HelpFormatter helpFormatter = new HelpFormatter();
+    helpFormatter.printHelp("nativesmoketest [options] jarfile nativedir [application...]", options);
+    System.out.println("\nApplications: " + String.join(", ", Workload.getApplications()));
+    System.out.println("\nThe source code is available from <https://github.com/tompecina/pdf>.");
+  }
+
+  /**
+   * Runs an application and gets its output.
+   *
+   * @param command the command launching the application
+   * @param output  the output file, or <code>null</code> if the
+   *                application writes to standard output
+   * @return the output
+   * @throws IOException          on error
+   * @throws InterruptedException if interrupted
+   */
+  public static byte[] run(final List<String> command, final Path output) throws IOException, InterruptedException {
+    if (output != null) {
+      Files.deleteIfExists(output);
+    }
+    final ProcessBuilder processBuilder = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT);
+    if (output != null) {
+      processBuilder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+    }
+    final Process process = processBuilder.start();
+    byte[] data = null;
+    if (output == null) {
+      try (InputStream inputStream = process.getInputStream()) {
+        data = inputStream.readAllBytes();
+      }
+    }
+    final int exitValue = process.waitFor();
+    if (exitValue != 0) {
+      throw new IOException("Run failed, exit value: " + exitValue);
+    }
+    return (output == null) ? data : Files.readAllBytes(output);
+  }
+
+  /**
+   * Masks the values that differ from run to run.
+   *
+   * @param data the output
+   * @return the output with the values masked
+   */
+  public static String normalize(final byte[] data) {
+    final StringBuilder text = new StringBuilder(new String(data, StandardCharsets.ISO_8859_1));
+    for (Pattern pattern : VARIABLE_VALUES) {
+      final Matcher matcher = pattern.matcher(text);
+      while (matcher.find()) {
+        for (int i = matcher.start(1); i < matcher.end(1); i++) {
+          text.setCharAt(i, MASK);
+        }
+      }
+    }
+    return text.toString();
+  }
+
+  /**
+   * Compares the outputs of an application run from the jar and as a
+   * native executable.
+   *
+   * @param application the name of the application
+   * @param jarFileName the absolute name of the jar file
+   * @param executable  the name of the native executable
+   * @param directory   the directory with the corpus
+   * @return the offset of the first difference, or -1 if the outputs
+   *         are identical
+   * @throws IOException          on error
+   * @throws InterruptedException if interrupted
+   */
+  public static int compare(
+      final String application,
+      final String jarFileName,
+      final String executable,
+      final Path directory) throws IOException, InterruptedException {
+    final Path output = Workload.getOutput(application, directory);
+    final String jvmOutput = normalize(run(
+        Workload.getCommand(application, jarFileName, Collections.emptyList(), directory), output));
+    final String nativeOutput = normalize(run(Workload.getNativeCommand(application, executable, directory), output));
+    final int length = Math.min(jvmOutput.length(), nativeOutput.length());
+    for (int i = 0; i < length; i++) {
+      if (jvmOutput.charAt(i) != nativeOutput.charAt(i)) {
+        return i;
+      }
+    }
+    return (jvmOutput.length() == nativeOutput.length()) ? -1 : length;
+  }
+
+  /**
+   * Main method.
+   *
+   * @param args command-line arguments
+   */
+  public static void main(final String[] args) {
+    log.fine("Application started");
+
+    CommandLine line = null;
+    try {
+      line = new DefaultParser().parse(options, args);
+    } catch (final Exception exception) {
+      usage();
+      log.fine("Failed to parse the command line, exception: " + exception);
+      System.exit(1);
+    }
+
+    if (line.hasOption("?")) {
+      usage();
+      log.fine("Application terminated normally");
+      System.exit(0);
+    }
+
+    if (line.hasOption("V")) {
+      System.err.println("1.0.0");
+      log.fine("Application terminated normally");
+      System.exit(0);
+    }
+
+    final String[] fileNames = line.getArgs();
+    if (fileNames.length < 2) {
+      usage();
+      log.fine("Too few filenames");
+      System.exit(1);
+    }
+
+    final String jarFileName = Paths.get(fileNames[0]).toAbsolutePath().toString();
+    final Path nativeDirectory = Paths.get(fileNames[1]).toAbsolutePath();
+    final List<String> applications = (fileNames.length == 2)
+        ? Workload.getApplications() : Arrays.asList(fileNames).subList(2, fileNames.length);
+
+    Path directory = null;
+    int failed = 0;
+    try {
+      directory = Files.createTempDirectory("pdf-native");
+      Workload.prepare(directory);
+      for (String application : applications) {
+        final Path executable = nativeDirectory.resolve(application);
+        if (!Files.isExecutable(executable)) {
+          System.out.printf("%s: SKIPPED, no executable%n", application);
+          continue;
+        }
+        try {
+          final int offset = compare(application, jarFileName, executable.toString(), directory);
+          if (offset < 0) {
+            System.out.printf("%s: OK%n", application);
+          } else {
+            failed++;
+            System.out.printf("%s: FAILED, outputs differ at offset %d%n", application, offset);
+          }
+        } catch (final IOException exception) {
+          failed++;
+          System.err.printf("%s: FAILED, exception: %s%n", application, exception);
+          log.fine("Smoke test failed: " + application + ", exception: " + exception);
+        }
+      }
+    } catch (final Exception exception) {
+      System.err.println("Error running smoke test, exception: " + exception);
+      log.fine("Error running smoke test, exception: " + exception);
+      failed++;
+    } finally {
+      Workload.delete(directory);
+    }
+
+    if (failed > 0) {
+      System.exit(1);
+    }
+    log.fine("Application terminated normally");
+  }
+}
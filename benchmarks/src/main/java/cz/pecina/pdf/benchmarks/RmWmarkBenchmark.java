@@ -0,0 +1,50 @@
+/* RmWmarkBenchmark.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+
+package cz.pecina.pdf.benchmarks;
+
+import cz.pecina.pdf.rmwmark.RmWmark;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Benchmark of RmWmark.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class RmWmarkBenchmark extends CorpusBenchmark {
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "RmWmarkBenchmark";
+  }
+
+  /**
+   * Removes watermarks from the document.
+   */
+  @Benchmark
+  public void remove() {
+    RmWmark.main(new String[] {inFileName, outFileName});
+  }
+}
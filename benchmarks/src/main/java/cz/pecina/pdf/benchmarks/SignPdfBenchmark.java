@@ -0,0 +1,74 @@
+/* SignPdfBenchmark.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+
+package cz.pecina.pdf.benchmarks;
+
+import cz.pecina.pdf.signpdf.Parameters;
+import cz.pecina.pdf.signpdf.SignPdf;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Benchmark of SignPdf.
+ *
+ * <p>An invisible signature is added, in append mode, so that the
+ * signatures already present in the document remain valid.  The
+ * signer, with the key store loaded, is set up before the benchmark;
+ * the document is read and written in each invocation, as the
+ * application does.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class SignPdfBenchmark extends CorpusBenchmark {
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "SignPdfBenchmark";
+  }
+
+  // the signer
+  private SignPdf signPdf;
+
+  // for description see CorpusBenchmark
+  @Override
+  protected void setUp() throws Exception {
+    signPdf = new SignPdf(new Parameters(new String[] {
+        "-k", keyStoreFileName,
+        "-p", new String(CorpusGenerator.PASSWORD),
+        "-a",
+        inFileName, outFileName}));
+  }
+
+  /**
+   * Signs the document.
+   *
+   * @throws Exception on error
+   */
+  @Benchmark
+  public void sign() throws Exception {
+    Files.write(Paths.get(outFileName), signPdf.sign(Files.readAllBytes(Paths.get(inFileName))));
+  }
+}
@@ -0,0 +1,80 @@
+/* StampPdfBenchmark.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+
+package cz.pecina.pdf.benchmarks;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.StampingProperties;
+import cz.pecina.pdf.stamppdf.Parameters;
+import cz.pecina.pdf.stamppdf.StampPdf;
+import java.io.IOException;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Benchmark of StampPdf.
+ *
+ * <p>A page number and a frame are stamped on all pages.  The commands
+ * are parsed before the benchmark; the document is stamped in append
+ * mode, as the application does.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class StampPdfBenchmark extends CorpusBenchmark {
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "StampPdfBenchmark";
+  }
+
+  // the parameters
+  private Parameters par;
+
+  // for description see CorpusBenchmark
+  @Override
+  protected void setUp() {
+    par = new Parameters(new String[] {
+        "-p", "1-",
+        "-t", "Page {page} of {pages}:-100:20",
+        "-lw", "0.5",
+        "-re", "20:20:120:30",
+        "-s",
+        inFileName, outFileName});
+  }
+
+  /**
+   * Stamps the document.
+   *
+   * @throws IOException on error
+   */
+  @Benchmark
+  public void stamp() throws IOException {
+    try (PdfDocument doc = new PdfDocument(
+        new PdfReader(inFileName), new PdfWriter(outFileName), new StampingProperties().useAppendMode())) {
+      new StampPdf(par).stamp(doc);
+    }
+  }
+}
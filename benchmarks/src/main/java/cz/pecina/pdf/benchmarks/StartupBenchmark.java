@@ -0,0 +1,373 @@
+/* StartupBenchmark.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+package cz.pecina.pdf.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+/**
+ * Benchmark of the startup time of the applications.
+ *
+ * <p>Each application is launched repeatedly in a new JVM on the
+ * workload corpus, and the total time of the run is measured, together
+ * with the time to the first byte of output for applications writing
+ * to standard output, the first byte being the first byte read from
+ * the pipe.  No such time is reported for applications writing to a
+ * file: an incremental update starts with a copy of the input file,
+ * made before any processing, while an atomically replaced file appears
+ * only when it is complete.  If an archive directory is given, the
+ * applications are measured both without and with the class data
+ * sharing archives found in it.  The applications are launched either
+ * through their own main classes or, optionally, through the launcher
+ * of the utilities.  The median and the 90th percentile of the times
+ * are reported, together with the number of classes loaded, which is
+ * counted in an additional run with class loading logged.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class StartupBenchmark {
+
+  // static logger
+  private static final Logger log = Logger.getLogger(StartupBenchmark.class.getName());
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "StartupBenchmark";
+  }
+
+  // options
+  private static final Options options = new Options();
+
+  static {
+    options.addOption(
+        Option.builder("?")
+        .longOpt("help")
+        .desc("show usage information")
+        .build());
+    options.addOption(
+        Option.builder("V")
+        .longOpt("version")
+        .desc("show version")
+        .build());
+    options.addOption(
+        Option.builder("n")
+        .longOpt("runs")
+        .hasArg()
+        .type(Number.class)
+        .argName("NUMBER")
+        .desc("number of measured runs per application (default: 10)")
+        .build());
+    options.addOption(
+        Option.builder("w")
+        .longOpt("warmup")
+        .hasArg()
+        .type(Number.class)
+        .argName("NUMBER")
+        .desc("number of unmeasured runs per application (default: 1)")
+        .build());
+    options.addOption(
+        Option.builder("a")
+        .longOpt("archives")
+        .hasArg()
+        .argName("DIRECTORY")
+        .desc("directory with class data sharing archives")
+        .build());
+    options.addOption(
+        Option.builder("l")
+        .longOpt("launcher")
+        .desc("launch the applications through the launcher of the utilities")
+        .build());
+  }
+
+  // default numbers of runs
+  private static final int DEFAULT_RUNS = 10;
+  private static final int DEFAULT_WARMUP = 1;
+
+  // conversion factor
+  private static final double NANOS_PER_MILLI = 1e6;
+
+  // percentiles reported
+  private static final double MEDIAN = 0.5;
+  private static final double P90 = 0.9;
+
+  /**
+   * Prints usage information.
+   *
+   */
+  private static void usage() {
+    final HelpFormatter helpFormatter = new HelpFormatter();
+    helpFormatter.printHelp("startupbenchmark [options] jarfile [application...]", options);
+    System.out.println("\nApplications: " + String.join(", ", Workload.getApplications()));
+    System.out.println("\nThe source code is available from <https://github.com/tompecina/pdf>.");
+  }
+
+  /**
+   * Measures one run of an application.
+   *
+   * @param command the command launching the application
+   * @param output  the output file, or <code>null</code> if the
+   *                application writes to standard output
+   * @return the time to the first byte, zero if the application writes
+   *         to a file, and the total time in nanoseconds
+   * @throws IOException          on error
+   * @throws InterruptedException if interrupted
+   */
+  public static long[] measure(final List<String> command, final Path output)
+      throws IOException, InterruptedException {
+    if (output != null) {
+      Files.deleteIfExists(output);
+    }
+    final ProcessBuilder processBuilder = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD);
+    if (output != null) {
+      processBuilder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+    }
+    final long startTime = System.nanoTime();
+    final Process process = processBuilder.start();
+    long firstByteTime = 0;
+    if (output == null) {
+      try (InputStream inputStream = process.getInputStream()) {
+        if (inputStream.read() != -1) {
+          firstByteTime = System.nanoTime();
+        }
+        inputStream.transferTo(OutputStream.nullOutputStream());
+      }
+    }
+    final int exitValue = process.waitFor();
+    final long endTime = System.nanoTime();
+    if (exitValue != 0) {
+      throw new IOException("Run failed, exit value: " + exitValue);
+    }
+    if (output == null) {
+      if (firstByteTime == 0) {
+        throw new IOException("No output");
+      }
+      return new long[] {firstByteTime - startTime, endTime - startTime};
+    }
+    if (!Files.exists(output) || (Files.size(output) == 0)) {
+      throw new IOException("No output");
+    }
+    return new long[] {0, endTime - startTime};
+  }
+
+  /**
+   * Counts the classes loaded in one run of an application.
+   *
+   * @param command the command launching the application, with class
+   *                loading logged to the log file
+   * @param output  the output file, or <code>null</code> if the
+   *                application writes to standard output
+   * @param logFile the log file
+   * @return the number of classes loaded
+   * @throws IOException          on error
+   * @throws InterruptedException if interrupted
+   */
+  public static long countClasses(final List<String> command, final Path output, final Path logFile)
+      throws IOException, InterruptedException {
+    Files.deleteIfExists(logFile);
+    measure(command, output);
+    try (Stream<String> lines = Files.lines(logFile)) {
+      return lines.filter(line -> line.contains(" source: ")).count();
+    } finally {
+      Files.delete(logFile);
+    }
+  }
+
+  // gets a percentile of sorted values in milliseconds
+  private static double getPercentile(final List<Long> values, final double percentile) {
+    return values.get((int) Math.ceil(percentile * values.size()) - 1) / NANOS_PER_MILLI;
+  }
+
+  // formats a percentile of sorted values, "-" if not measured
+  private static String formatPercentile(final List<Long> values, final double percentile, final boolean measured) {
+    return measured ? String.format("%.1f", getPercentile(values, percentile)) : "-";
+  }
+
+  /**
+   * Benchmarks one application.
+   *
+   * @param application the name of the application
+   * @param jarFileName the absolute name of the jar file
+   * @param jvmOptions  additional options of the JVM
+   * @param launcher    true if the application is to be launched
+   *                    through the launcher of the utilities
+   * @param directory   the directory with the corpus
+   * @param warmup      the number of unmeasured runs
+   * @param runs        the number of measured runs
+   * @return the line of the report
+   * @throws IOException          on error
+   * @throws InterruptedException if interrupted
+   */
+  public static String benchmark(
+      final String application,
+      final String jarFileName,
+      final List<String> jvmOptions,
+      final boolean launcher,
+      final Path directory,
+      final int warmup,
+      final int runs) throws IOException, InterruptedException {
+    final List<String> command = launcher
+        ? Workload.getLauncherCommand(application, jarFileName, jvmOptions, directory)
+        : Workload.getCommand(application, jarFileName, jvmOptions, directory);
+    final Path output = Workload.getOutput(application, directory);
+    log.fine("Benchmarked command: " + command);
+    for (int i = 0; i < warmup; i++) {
+      measure(command, output);
+    }
+    final List<Long> firstByteTimes = new ArrayList<>();
+    final List<Long> totalTimes = new ArrayList<>();
+    for (int i = 0; i < runs; i++) {
+      final long[] times = measure(command, output);
+      firstByteTimes.add(times[0]);
+      totalTimes.add(times[1]);
+    }
+    Collections.sort(firstByteTimes);
+    Collections.sort(totalTimes);
+    final Path logFile = directory.resolve("classes.log");
+    final List<String> logOptions = new ArrayList<>(jvmOptions);
+    logOptions.add("-Xlog:class+load=info:file=" + logFile);
+    final long classes = countClasses(launcher
+        ? Workload.getLauncherCommand(application, jarFileName, logOptions, directory)
+        : Workload.getCommand(application, jarFileName, logOptions, directory), output, logFile);
+    return String.format("%-14s %-4s %9s %9s %9.1f %9.1f %8d",
+        application, jvmOptions.isEmpty() ? "-" : "cds",
+        formatPercentile(firstByteTimes, MEDIAN, output == null), formatPercentile(firstByteTimes, P90, output == null),
+        getPercentile(totalTimes, MEDIAN), getPercentile(totalTimes, P90), classes);
+  }
+
+  /**
+   * Main method.
+   *
+   * @param args command-line arguments
+   */
+  public static void main(final String[] args) {
+    log.fine("Application started");
+
+    CommandLine line = null;
+    try {
+      line = new DefaultParser().parse(options, args);
+    } catch (final Exception exception) {
+      usage();
+      log.fine("Failed to parse the command line, exception: " + exception);
+      System.exit(1);
+    }
+
+    if (line.hasOption("?")) {
+      usage();
+      log.fine("Application terminated normally");
+      System.exit(0);
+    }
+
+    if (line.hasOption("V")) {
+      System.err.println("1.0.0");
+      log.fine("Application terminated normally");
+      System.exit(0);
+    }
+
+    final String[] fileNames = line.getArgs();
+    if (fileNames.length < 1) {
+      usage();
+      log.fine("Too few filenames");
+      System.exit(1);
+    }
+
+    int runs = DEFAULT_RUNS;
+    int warmup = DEFAULT_WARMUP;
+    try {
+      if (line.hasOption("n")) {
+        runs = ((Number) line.getParsedOptionValue("n")).intValue();
+      }
+      if (line.hasOption("w")) {
+        warmup = ((Number) line.getParsedOptionValue("w")).intValue();
+      }
+      if ((runs < 1) || (warmup < 0)) {
+        throw new IllegalArgumentException("Invalid number of runs");
+      }
+    } catch (final Exception exception) {
+      System.err.println("Error in parameters, exception: " + exception);
+      log.fine("Failed to parse parameters, exception: " + exception);
+      System.exit(1);
+    }
+
+    final String jarFileName = Paths.get(fileNames[0]).toAbsolutePath().toString();
+    final Path archiveDirectory = line.hasOption("a") ? Paths.get(line.getOptionValue("a")).toAbsolutePath() : null;
+    final List<String> applications = (fileNames.length == 1)
+        ? Workload.getApplications() : Arrays.asList(fileNames).subList(1, fileNames.length);
+
+    Path directory = null;
+    int failed = 0;
+    try {
+      directory = Files.createTempDirectory("pdf-startup");
+      Workload.prepare(directory);
+      System.out.printf("%-14s %-4s %9s %9s %9s %9s %8s%n", "application", "cds", "ttfb p50", "ttfb p90", "total p50",
+          "total p90", "classes");
+      for (String application : applications) {
+        final List<List<String>> variants = new ArrayList<>();
+        variants.add(Collections.emptyList());
+        if (archiveDirectory != null) {
+          final Path archive = archiveDirectory.resolve(application + ".jsa");
+          if (Files.exists(archive)) {
+            variants.add(Collections.singletonList("-XX:SharedArchiveFile=" + archive));
+          }
+        }
+        for (List<String> jvmOptions : variants) {
+          try {
+            System.out.println(benchmark(
+                application, jarFileName, jvmOptions, line.hasOption("l"), directory, warmup, runs));
+          } catch (final IOException exception) {
+            failed++;
+            System.err.printf("%s: FAILED, exception: %s%n", application, exception);
+            log.fine("Benchmark failed: " + application + ", exception: " + exception);
+          }
+        }
+      }
+    } catch (final Exception exception) {
+      System.err.println("Error running benchmark, exception: " + exception);
+      log.fine("Error running benchmark, exception: " + exception);
+      failed++;
+    } finally {
+      Workload.delete(directory);
+    }
+
+    if (failed > 0) {
+      System.exit(1);
+    }
+    log.fine("Application terminated normally");
+  }
+}
@@ -0,0 +1,339 @@
+/* Workload.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+package cz.pecina.pdf.benchmarks;
+
+import cz.pecina.pdf.addpdfstream.AddPdfStream;
+import cz.pecina.pdf.signboxpdf.FieldSpec;
+import cz.pecina.pdf.signboxpdf.SignBoxPdf;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Command-line workload of the applications.
+ *
+ * <p>The workload consists of one typical invocation of each
+ * application on a small corpus, which is prepared in a directory by
+ * {@link #prepare}.  Each application is launched in a separate JVM
+ * from the fat jar, the way it is launched by the scripts in
+ * <code>bin</code>.  The workload is used both for training the class
+ * data sharing archives and for measuring the startup time.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public final class Workload {
+
+  // static logger
+  private static final Logger log = Logger.getLogger(Workload.class.getName());
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "Workload";
+  }
+
+  // main classes of the applications
+  private static final Map<String, String> MAIN_CLASSES = new LinkedHashMap<>();
+
+  static {
+    MAIN_CLASSES.put("addpdfmeta", "cz.pecina.pdf.addpdfmeta.AddPdfMeta");
+    MAIN_CLASSES.put("addpdfstream", "cz.pecina.pdf.addpdfstream.AddPdfStream");
+    MAIN_CLASSES.put("inspectpdf", "cz.pecina.pdf.inspectpdf.InspectPdf");
+    MAIN_CLASSES.put("pdftoxml", "cz.pecina.pdf.pdftoxml.PdfToXml");
+    MAIN_CLASSES.put("pipelinepdf", "cz.pecina.pdf.pipelinepdf.PipelinePdf");
+    MAIN_CLASSES.put("readpdfstream", "cz.pecina.pdf.readpdfstream.ReadPdfStream");
+    MAIN_CLASSES.put("rmopass", "cz.pecina.pdf.rmopass.RmOPass");
+    MAIN_CLASSES.put("rmttlpdf", "cz.pecina.pdf.rmttlpdf.RmTtlPdf");
+    MAIN_CLASSES.put("rmwmark", "cz.pecina.pdf.rmwmark.RmWmark");
+    MAIN_CLASSES.put("signboxpdf", "cz.pecina.pdf.signboxpdf.SignBoxPdf");
+    MAIN_CLASSES.put("signpdf", "cz.pecina.pdf.signpdf.SignPdf");
+    MAIN_CLASSES.put("stamppdf", "cz.pecina.pdf.stamppdf.StampPdf");
+  }
+
+  // main class of the launcher of the utilities
+  private static final String LAUNCHER_CLASS = "cz.pecina.pdf.PdfHelp";
+
+  // metadata
+  private static final String METADATA =
+      "<?xpacket begin=\"\uFEFF\" id=\"W5M0MpCehiHzreSzNTczkc9d\"?>\n"
+      + "<x:xmpmeta xmlns:x=\"adobe:ns:meta/\">\n"
+      + "  <rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">\n"
+      + "    <rdf:Description rdf:about=\"\" xmlns:dc=\"http://purl.org/dc/elements/1.1/\">\n"
+      + "      <dc:title><rdf:Alt><rdf:li xml:lang=\"x-default\">Workload</rdf:li></rdf:Alt></dc:title>\n"
+      + "    </rdf:Description>\n"
+      + "  </rdf:RDF>\n"
+      + "</x:xmpmeta>\n"
+      + "<?xpacket end=\"w\"?>\n";
+
+  // signature field specifications
+  private static final String FIELDS = "page,x,y,width,height,name\n1,-220,60,180,36,Signature\n";
+
+  // size of the data file in bytes
+  private static final int DATA_SIZE = 0x10000;
+
+  // time of signing, fixed so that the outputs are reproducible
+  private static final String SIGN_DATE = "2019-01-01T00:00:00Z";
+
+  // parameters of the corpus document
+  private static final int PAGES = 2;
+  private static final int IMAGES = 1;
+  private static final int OBJECTS = 40;
+  private static final int SIGNATURES = 1;
+
+  // prevents instantiation
+  private Workload() {
+  }
+
+  /**
+   * Gets the names of the applications.
+   *
+   * @return the list of names
+   */
+  public static List<String> getApplications() {
+    return new ArrayList<>(MAIN_CLASSES.keySet());
+  }
+
+  /**
+   * Gets the main class of an application.
+   *
+   * @param application the name of the application
+   * @return the fully qualified name of the main class
+   * @throws IllegalArgumentException if the application is not known
+   */
+  public static String getMainClass(final String application) {
+    final String mainClass = MAIN_CLASSES.get(application);
+    if (mainClass == null) {
+      throw new IllegalArgumentException("Unknown application: " + application);
+    }
+    return mainClass;
+  }
+
+  /**
+   * Prepares the corpus.
+   *
+   * <p>The corpus consists of a two-page document with an image and a
+   * signature, a key store, a metadata file, a data file, a list of
+   * signature fields, and copies of the document with a blank
+   * signature field and with an embedded stream.
+   *
+   * @param directory the directory, which must exist
+   * @throws IOException              on error
+   * @throws GeneralSecurityException on error in key generation
+   */
+  public static void prepare(final Path directory) throws IOException, GeneralSecurityException {
+    final String keyStoreFileName = directory.resolve("keystore.p12").toString();
+    CorpusGenerator.generateKeyStore(keyStoreFileName, 0);
+    final String inFileName = directory.resolve("in.pdf").toString();
+    new CorpusGenerator(0, PAGES, IMAGES, OBJECTS, SIGNATURES).generate(inFileName, keyStoreFileName);
+    Files.write(directory.resolve("metadata.xml"), METADATA.getBytes(StandardCharsets.UTF_8));
+    Files.write(directory.resolve("fields.csv"), FIELDS.getBytes(StandardCharsets.US_ASCII));
+    final String dataFileName = directory.resolve("stream.dat").toString();
+    CorpusGenerator.generateData(dataFileName, DATA_SIZE, 0);
+    final List<FieldSpec> specs = FieldSpec.read(directory.resolve("fields.csv").toString(), 1, 1, 1);
+    SignBoxPdf.addFields(inFileName, directory.resolve("fields.pdf").toString(), specs);
+    AddPdfStream.main(new String[] {"-n", "stream.dat", inFileName, dataFileName,
+        directory.resolve("stream.pdf").toString()});
+    log.fine("Workload corpus prepared in: " + directory);
+  }
+
+  /**
+   * Deletes the corpus.
+   *
+   * @param directory the directory with the corpus, may be <code>null</code>
+   */
+  public static void delete(final Path directory) {
+    if (directory != null) {
+      try (Stream<Path> paths = Files.walk(directory)) {
+        for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+          Files.delete(path);
+        }
+        log.fine("Workload corpus deleted");
+      } catch (final IOException exception) {
+        log.fine("Failed to delete corpus, exception: " + exception);
+      }
+    }
+  }
+
+  /**
+   * Gets the arguments of an application.
+   *
+   * @param application the name of the application
+   * @param directory   the directory with the corpus
+   * @return the list of arguments
+   */
+  public static List<String> getArguments(final String application, final Path directory) {
+    final String inFileName = directory.resolve("in.pdf").toString();
+    final Path output = getOutput(application, directory);
+    final String outFileName = (output == null) ? null : output.toString();
+    switch (application) {
+      case "addpdfmeta":
+        return Arrays.asList(inFileName, directory.resolve("metadata.xml").toString(), outFileName);
+      case "addpdfstream":
+        return Arrays.asList(
+            "-c", "-n", "stream.dat", inFileName, directory.resolve("stream.dat").toString(), outFileName);
+      case "inspectpdf":
+        return Arrays.asList("-m", "-o", inFileName);
+      case "pdftoxml":
+        return Collections.singletonList(inFileName);
+      case "pipelinepdf":
+        return Arrays.asList(
+            inFileName, outFileName,
+            "--", "stamp", "-p", "1-", "-t", "Page {page} of {pages}:-100:20",
+            "--", "signbox", "-F", directory.resolve("fields.csv").toString(),
+            "--", "addmeta", directory.resolve("metadata.xml").toString(),
+            "--", "sign", "-k", directory.resolve("keystore.p12").toString(),
+            "-p", new String(CorpusGenerator.PASSWORD), "-f", "Signature", "--sign-date", SIGN_DATE);
+      case "readpdfstream":
+        return Arrays.asList("-n", "stream.dat", directory.resolve("stream.pdf").toString());
+      case "rmttlpdf":
+        return Arrays.asList("-n", "-s", "Title=Workload", inFileName, outFileName);
+      case "signboxpdf":
+        return Arrays.asList("-F", directory.resolve("fields.csv").toString(), inFileName, outFileName);
+      case "signpdf":
+        return Arrays.asList(
+            "-k", directory.resolve("keystore.p12").toString(),
+            "-p", new String(CorpusGenerator.PASSWORD),
+            "-f", "Signature",
+            "--sign-date", SIGN_DATE,
+            "-a",
+            directory.resolve("fields.pdf").toString(), outFileName);
+      case "stamppdf":
+        return Arrays.asList(
+            "-p", "1-",
+            "-t", "Page {page} of {pages}:-100:20",
+            "-lw", "0.5",
+            "-re", "20:20:120:30",
+            inFileName, outFileName);
+      default:
+        getMainClass(application);
+        return Arrays.asList(inFileName, outFileName);
+    }
+  }
+
+  /**
+   * Gets the output file of an application.
+   *
+   * @param application the name of the application
+   * @param directory   the directory with the corpus
+   * @return the output file, or <code>null</code> if the application
+   *         writes to standard output
+   */
+  public static Path getOutput(final String application, final Path directory) {
+    switch (application) {
+      case "inspectpdf":
+      case "pdftoxml":
+      case "readpdfstream":
+        return null;
+      default:
+        return directory.resolve("out-" + application + ".pdf");
+    }
+  }
+
+  /**
+   * Gets the Java launcher of the running JVM.
+   *
+   * @return the path of the launcher
+   */
+  public static String getJava() {
+    return Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+  }
+
+  /**
+   * Creates the command launching an application from a jar.
+   *
+   * @param application the name of the application
+   * @param jarFileName the absolute name of the jar file
+   * @param jvmOptions  additional options of the JVM
+   * @param directory   the directory with the corpus
+   * @return the command
+   */
+  public static List<String> getCommand(
+      final String application,
+      final String jarFileName,
+      final List<String> jvmOptions,
+      final Path directory) {
+    final List<String> command = new ArrayList<>();
+    command.add(getJava());
+    command.addAll(jvmOptions);
+    command.add("-cp");
+    command.add(jarFileName);
+    command.add(getMainClass(application));
+    command.addAll(getArguments(application, directory));
+    return command;
+  }
+
+  /**
+   * Creates the command launching an application from a jar through
+   * the launcher of the utilities.
+   *
+   * @param application the name of the application
+   * @param jarFileName the absolute name of the jar file
+   * @param jvmOptions  additional options of the JVM
+   * @param directory   the directory with the corpus
+   * @return the command
+   */
+  public static List<String> getLauncherCommand(
+      final String application,
+      final String jarFileName,
+      final List<String> jvmOptions,
+      final Path directory) {
+    final List<String> command = new ArrayList<>();
+    command.add(getJava());
+    command.addAll(jvmOptions);
+    command.add("-cp");
+    command.add(jarFileName);
+    command.add(LAUNCHER_CLASS);
+    command.add(application);
+    command.addAll(getArguments(application, directory));
+    return command;
+  }
+
+  /**
+   * Creates the command launching a native executable of an
+   * application.
+   *
+   * @param application the name of the application
+   * @param executable  the name of the executable
+   * @param directory   the directory with the corpus
+   * @return the command
+   */
+  public static List<String> getNativeCommand(final String application, final String executable, final Path directory) {
+    final List<String> command = new ArrayList<>();
+    command.add(executable);
+    command.addAll(getArguments(application, directory));
+    return command;
+  }
+}
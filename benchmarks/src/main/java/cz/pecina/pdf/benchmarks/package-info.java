@@ -0,0 +1,36 @@
+/* package-info.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+
+/**
+ * JMH benchmarks of the PDF processing applications.
+ *
+ * <p>The benchmarks are run on a synthetic corpus, generated
+ * deterministically by {@link cz.pecina.pdf.benchmarks.CorpusGenerator}
+ * from the parameters of each benchmark.  The startup time of the
+ * applications, launched from the fat jar, is measured separately by
+ * {@link cz.pecina.pdf.benchmarks.StartupBenchmark}.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+package cz.pecina.pdf.benchmarks;
@@ -0,0 +1,23 @@
+#!/bin/bash
+
+# Creates the class data sharing archives used by run.sh, by running
+# each application once on a generated corpus.  The archives must be
+# created by the same Java runtime (JDK 13 or later) that runs the
+# applications, and again after each rebuild of the jar.
+
+realpath=$(realpath "$0")
+path=$(dirname "$realpath")
+root=$(dirname "$path")
+
+jar=$(find "$root/target/" -name 'pdf-*-jar-with-dependencies.jar' | sort | tail -n 1)
+if [ -z "$jar" ]; then
+    echo "Application jar not found, run 'mvn package' first" >&2
+    exit 1
+fi
+
+benchmarks="$root/benchmarks/target/benchmarks.jar"
+if [ ! -f "$benchmarks" ]; then
+    (cd "$root/benchmarks" && mvn -B -q package) || exit 1
+fi
+
+java -cp "$benchmarks" cz.pecina.pdf.benchmarks.CdsTrainer "$(realpath "$jar")" "$root/target/cds" "$@"
@@ -0,0 +1,41 @@
+#!/bin/bash
+
+# Builds native executables of the applications from the jar with
+# GraalVM native-image (GraalVM for JDK 21 or later), one per
+# application, into target/native; run.sh prefers them to the jar.
+# The applications to be built may be given as arguments.
+
+realpath=$(realpath "$0")
+path=$(dirname "$realpath")
+root=$(dirname "$path")
+
+jar=$(find "$root/target/" -name 'pdf-*-jar-with-dependencies.jar' | sort | tail -n 1)
+if [ -z "$jar" ]; then
+    echo "Application jar not found, run 'mvn package' first" >&2
+    exit 1
+fi
+
+if [ -n "$GRAALVM_HOME" ]; then
+    nativeimage="$GRAALVM_HOME/bin/native-image"
+else
+    nativeimage=$(command -v native-image)
+fi
+if [ -z "$nativeimage" ]; then
+    echo "native-image not found, set GRAALVM_HOME" >&2
+    exit 1
+fi
+
+if [ $# -eq 0 ]; then
+    set -- addpdfmeta addpdfstream inspectpdf pdftoxml readpdfstream rmttlpdf rmopass rmwmark signboxpdf signpdf stamppdf
+fi
+
+mkdir -p "$root/target/native"
+
+for name in "$@"; do
+    class=$(sed -n "s/^ *$name) class='\(.*\)';;\$/\1/p" "$path/run.sh")
+    if [ -z "$class" ]; then
+        echo "Unknown application: $name" >&2
+        exit 1
+    fi
+    "$nativeimage" -cp "$jar" -o "$root/target/native/$name" "$class" || exit 1
+done
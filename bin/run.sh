@@ -9,6 +9,7 @@ case "$name" in
      addpdfstream) class='cz.pecina.pdf.addpdfstream.AddPdfStream';;
      inspectpdf) class='cz.pecina.pdf.inspectpdf.InspectPdf';;
      pdftoxml) class='cz.pecina.pdf.pdftoxml.PdfToXml';;
+     pipelinepdf) class='cz.pecina.pdf.pipelinepdf.PipelinePdf';;
      readpdfstream) class='cz.pecina.pdf.readpdfstream.ReadPdfStream';;
      redactpdf) class='cz.pecina.pdf.redactpdf.RedactPdf';;
      rmttlpdf) class='cz.pecina.pdf.rmttlpdf.RmTtlPdf';;
@@ -20,4 +21,17 @@ case "$name" in
      *) class='cz.pecina.pdf.PdfHelp';;
 esac
 
-java -cp $(find $path/../target/ -name 'pdf-*-jar-with-dependencies.jar' | sort | tail -n 1) $class "$@"
+# native executable created by native-build.sh
+if [ -x "$path/../target/native/$name" ]; then
+    exec "$path/../target/native/$name" "$@"
+fi
+
+jar=$(realpath $(find $path/../target/ -name 'pdf-*-jar-with-dependencies.jar' | sort | tail -n 1))
+
+# class data sharing archive created by cds-train.sh
+archive="$path/../target/cds/$name.jsa"
+if [ -f "$archive" ]; then
+    cds="-XX:SharedArchiveFile=$archive"
+fi
+
+java $cds -cp "$jar" $class "$@"
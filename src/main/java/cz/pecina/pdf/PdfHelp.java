@@ -22,16 +22,24 @@
 
 package cz.pecina.pdf;
 
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
 import java.util.logging.Logger;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
-import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 
 /**
- * Display list of available utilities and exit.
+ * Launcher of the utilities.
+ *
+ * <p>The first argument selects the utility, either by its command
+ * name (e.g., <code>stamp</code>) or by the name of its script (e.g.,
+ * <code>stamppdf</code>), and the remaining arguments are passed to
+ * it.  The main class of the utility is only loaded when selected, so
+ * that no classes of the other utilities are loaded or initialized.
+ * Without a command, the list of available utilities is displayed.
  *
  * @author Tomáš Pecina
  * @version 1.0.0
@@ -58,28 +66,52 @@ public class PdfHelp {
         .build());
   }
 
+  // utilities: command, script name, main class, description
+  private static final String[][] COMMANDS = {
+    {"addmeta", "addpdfmeta", "cz.pecina.pdf.addpdfmeta.AddPdfMeta", "add metadata to PDF"},
+    {"addstream", "addpdfstream", "cz.pecina.pdf.addpdfstream.AddPdfStream", "add stream to PDF"},
+    {"inspect", "inspectpdf", "cz.pecina.pdf.inspectpdf.InspectPdf", "show PDF metadata"},
+    {"toxml", "pdftoxml", "cz.pecina.pdf.pdftoxml.PdfToXml", "convert PDF to XML file"},
+    {"pipeline", "pipelinepdf", "cz.pecina.pdf.pipelinepdf.PipelinePdf", "apply several operations to PDF in one pass"},
+    {"readstream", "readpdfstream", "cz.pecina.pdf.readpdfstream.ReadPdfStream", "read stream from PDF"},
+    {"rmttl", "rmttlpdf", "cz.pecina.pdf.rmttlpdf.RmTtlPdf", "remove PDF title"},
+    {"rmopass", "rmopass", "cz.pecina.pdf.rmopass.RmOPass", "remove owner password from PDF"},
+    {"rmwmark", "rmwmark", "cz.pecina.pdf.rmwmark.RmWmark", "strip text elements from PDF"},
+    {"signbox", "signboxpdf", "cz.pecina.pdf.signboxpdf.SignBoxPdf", "add signing box to PDF"},
+    {"sign", "signpdf", "cz.pecina.pdf.signpdf.SignPdf", "digitally sign PDF"},
+    {"stamp", "stamppdf", "cz.pecina.pdf.stamppdf.StampPdf", "stamp PDF with simple text information"}
+  };
+
   /**
    * Prints usage information.
    *
    */
   private static void usage() {
-    final HelpFormatter helpFormatter = new HelpFormatter();
-    System.out.println("A suite of PDF processing utilities:");
-    System.out.println(" - AddPdfMeta - add metadata to PDF");
-    System.out.println(" - AddPdfStream - add stream to PDF");
-    System.out.println(" - InspectPdf - show PDF metadata");
-    System.out.println(" - PdfToXml - convert PDF to XML file");
-    System.out.println(" - ReadPdfStream - read stream from PDF");
-    System.out.println(" - RedactPdf - redact PDF");
-    System.out.println(" - RmTtlPdf - remove PDF title");
-    System.out.println(" - RmOPass - remove owner password from PDF");
-    System.out.println(" - RmWmark - strip text elements from PDF");
-    System.out.println(" - SignBoxPdf - add signing box to PDF");
-    System.out.println(" - SignPdf - digitally sign PDF");
-    System.out.println(" - StampPdf - stamp PDF with simple text information");
+    System.out.println("A suite of PDF processing utilities.");
+    System.out.println("\nUsage: pdf [-V] COMMAND [ARGUMENTS...]\n\nCommands:");
+    for (String[] command : COMMANDS) {
+      System.out.printf("  %-11s %s (%s)%n", command[0], command[3], command[1]);
+    }
+    System.out.println("\nThe arguments of a command are shown with: pdf COMMAND --help");
     System.out.println("\nThe source code is available from <https://github.com/tompecina/pdf>.");
   }
 
+  /**
+   * Gets the main class of a utility.
+   *
+   * @param name the command or the script name of the utility
+   * @return the fully qualified name of the main class, or
+   *         <code>null</code> if no such utility exists
+   */
+  public static String getMainClass(final String name) {
+    for (String[] command : COMMANDS) {
+      if (command[0].equalsIgnoreCase(name) || command[1].equalsIgnoreCase(name)) {
+        return command[2];
+      }
+    }
+    return null;
+  }
+
   /**
    * Main method.
    *
@@ -88,6 +120,30 @@ public class PdfHelp {
   public static void main(final String[] args) {
     log.fine("Application started");
 
+    if ((args.length > 0) && !args[0].startsWith("-")) {
+      final String mainClass = getMainClass(args[0]);
+      if (mainClass == null) {
+        System.err.println("Unknown command: " + args[0]);
+        usage();
+        log.fine("Unknown command: " + args[0]);
+        System.exit(1);
+      }
+      log.fine("Dispatching to: " + mainClass);
+      try {
+        Class.forName(mainClass).getMethod("main", String[].class)
+            .invoke(null, (Object) Arrays.copyOfRange(args, 1, args.length));
+      } catch (final InvocationTargetException exception) {
+        System.err.println("Error running command, exception: " + exception.getCause());
+        log.fine("Error running command, exception: " + exception.getCause());
+        System.exit(1);
+      } catch (final ReflectiveOperationException exception) {
+        System.err.println("Error loading command, exception: " + exception);
+        log.fine("Error loading command, exception: " + exception);
+        System.exit(1);
+      }
+      return;
+    }
+
     final CommandLineParser parser = new DefaultParser();
     CommandLine line = null;
     try {
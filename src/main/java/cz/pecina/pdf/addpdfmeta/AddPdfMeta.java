@@ -25,10 +25,19 @@ package cz.pecina.pdf.addpdfmeta;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfReader;
 import com.itextpdf.kernel.pdf.PdfWriter;
-import java.io.ByteArrayInputStream;
+import com.itextpdf.kernel.pdf.StampingProperties;
+import cz.pecina.pdf.util.BatchRunner;
+import cz.pecina.pdf.util.IncrementalOutputStream;
+import cz.pecina.pdf.util.Manifest;
+import cz.pecina.pdf.util.Metrics;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Map;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -61,8 +70,40 @@ public class AddPdfMeta {
         .longOpt("version")
         .desc("show version")
         .build());
+    options.addOption(
+        Option.builder(null)
+        .longOpt("metrics")
+        .hasArg()
+        .argName("FILE")
+        .desc("write metrics to FILE (\"-\" = standard error)")
+        .build());
+    options.addOption(
+        Option.builder("b")
+        .longOpt("batch")
+        .hasArg()
+        .argName("MANIFEST")
+        .desc("process files listed in manifest")
+        .build());
+    options.addOption(
+        Option.builder("t")
+        .longOpt("template")
+        .hasArg()
+        .argName("FILE")
+        .desc("metadata template for batch processing")
+        .build());
+    options.addOption(
+        Option.builder("j")
+        .longOpt("threads")
+        .hasArg()
+        .type(Number.class)
+        .argName("THREADS")
+        .desc("number of documents processed at a time (default: number of processors)")
+        .build());
   }
 
+  // template placeholder
+  private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([^}]*)\\}");
+
   // for description see Object
   @Override
   public String toString() {
@@ -75,10 +116,131 @@ public class AddPdfMeta {
    */
   private static void usage() {
     final HelpFormatter helpFormatter = new HelpFormatter();
-    helpFormatter.printHelp("addpdfmeta [options] infile metadatafile [outfile]", options);
+    helpFormatter.printHelp("addpdfmeta [options] infile metadatafile [outfile]\n"
+        + "       addpdfmeta [options] -b manifest", options);
+    System.out.println("\nManifest is a CSV file with a header or a JSONL file, with the fields:");
+    System.out.println("  input     input file");
+    System.out.println("  metadata  metadata file, not used with template");
+    System.out.println("  output    output file (default: input file)");
+    System.out.println("In template, ${field} is replaced with the value of the field.");
     System.out.println("\nThe source code is available from <https://github.com/tompecina/pdf>.");
   }
 
+  /**
+   * Adds metadata to a PDF file.
+   *
+   * @param inFileName  the input file name
+   * @param metadata    the metadata
+   * @param outFileName the output file name
+   * @throws IOException on error
+   */
+  public static void addMetadata(final String inFileName, final byte[] metadata, final String outFileName)
+      throws IOException {
+    try (Metrics.Timer timer = Metrics.start("AddPdfMeta.addMetadata");
+        PdfReader reader = new PdfReader(inFileName);
+        IncrementalOutputStream out = new IncrementalOutputStream(reader, inFileName, outFileName)) {
+      Metrics.countFile(Metrics.BYTES_READ, inFileName);
+      try {
+        final PdfDocument pdfDocument =
+            new ModifiedPdfDocument(reader, new PdfWriter(out), new StampingProperties().useAppendMode(), metadata);
+        pdfDocument.close();
+      } catch (final RuntimeException exception) {
+        out.discard();
+        throw exception;
+      }
+    }
+  }
+
+  /**
+   * Expands a metadata template.
+   *
+   * @param template the template
+   * @param entry    the manifest entry
+   * @return the metadata
+   * @throws IOException if a field is missing in the entry
+   */
+  private static byte[] expandTemplate(final String template, final Map<String, String> entry) throws IOException {
+    final Matcher matcher = PLACEHOLDER.matcher(template);
+    final StringBuilder metadata = new StringBuilder(template.length());
+    int position = 0;
+    while (matcher.find()) {
+      final String value = entry.get(matcher.group(1));
+      if (value == null) {
+        throw new IOException("Field '" + matcher.group(1) + "' missing in manifest");
+      }
+      metadata.append(template, position, matcher.start());
+      for (char ch : value.toCharArray()) {
+        switch (ch) {
+          case '&':
+            metadata.append("&amp;");
+            break;
+          case '<':
+            metadata.append("&lt;");
+            break;
+          case '>':
+            metadata.append("&gt;");
+            break;
+          case '"':
+            metadata.append("&quot;");
+            break;
+          case '\'':
+            metadata.append("&apos;");
+            break;
+          default:
+            metadata.append(ch);
+            break;
+        }
+      }
+      position = matcher.end();
+    }
+    metadata.append(template, position, template.length());
+    return metadata.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Processes files listed in a manifest.
+   *
+   * <p>An invalid entry fails as a job of its own, so that the jobs
+   * already submitted, which may be updating their files in place,
+   * are always allowed to finish.
+   *
+   * @param manifestFileName the manifest file name
+   * @param templateFileName the template file name, or null
+   * @param threads          the number of threads
+   * @return true if all files were processed successfully
+   * @throws Exception on error
+   */
+  private static boolean processBatch(final String manifestFileName, final String templateFileName, final int threads)
+      throws Exception {
+    final Manifest manifest = new Manifest(manifestFileName);
+    final String template = (templateFileName == null)
+        ? null : new String(Files.readAllBytes(Paths.get(templateFileName)), StandardCharsets.UTF_8);
+    final BatchRunner runner = new BatchRunner(threads);
+    int failed;
+    try {
+      int row = 0;
+      for (Map<String, String> entry : manifest.getEntries()) {
+        row++;
+        final String inFileName = entry.get("input");
+        final String outFileName = entry.getOrDefault("output", inFileName);
+        runner.submit((inFileName == null) ? ("manifest entry " + row) : inFileName, () -> {
+          if (inFileName == null) {
+            throw new IOException("Input file missing in manifest");
+          }
+          if ((template == null) && (entry.get("metadata") == null)) {
+            throw new IOException("Metadata file missing in manifest");
+          }
+          final byte[] metadata = (template == null)
+              ? Files.readAllBytes(Paths.get(entry.get("metadata"))) : expandTemplate(template, entry);
+          runner.process(() -> addMetadata(inFileName, metadata, outFileName));
+        });
+      }
+    } finally {
+      failed = runner.finish();
+    }
+    return failed == 0;
+  }
+
   /**
    * Main method.
    *
@@ -115,22 +277,60 @@ public class AddPdfMeta {
       System.exit(0);
     }
 
+    if (line.hasOption("metrics")) {
+      Metrics.enable("addpdfmeta", line.getOptionValue("metrics"));
+    }
+
+    int threads = Runtime.getRuntime().availableProcessors();
+    if (line.hasOption("j")) {
+      try {
+        threads = ((Number) line.getParsedOptionValue("j")).intValue();
+      } catch (final Exception exception) {
+        System.err.println("Error in number of threads, exception: " + exception);
+        log.fine("Failed to parse number of threads, exception: " + exception);
+        System.exit(1);
+      }
+      if (threads < 1) {
+        System.err.println("Number of threads must be positive");
+        log.fine("Number of threads out of range");
+        System.exit(1);
+      }
+    }
+
     final String[] fileNames = line.getArgs();
 
-    if ((fileNames.length < 2) || (fileNames.length > 3)) {
+    if (line.hasOption("b")) {
+      if (fileNames.length > 0) {
+        usage();
+        log.fine("Error in parameters");
+        System.exit(1);
+      }
+      try {
+        if (!processBatch(line.getOptionValue("b"), line.getOptionValue("t"), threads)) {
+          log.fine("Batch processing failed");
+          System.exit(1);
+        }
+      } catch (final Exception exception) {
+        System.err.println("Error processing batch, exception: " + exception);
+        log.fine("Error processing batch, exception: " + exception);
+        System.exit(1);
+      }
+      log.fine("Application terminated normally");
+      return;
+    }
+
+    if ((fileNames.length < 2) || (fileNames.length > 3) || line.hasOption("t")) {
       usage();
       log.fine("Error in parameters");
       System.exit(1);
     }
 
-    byte[] inputData = null;
+    final String inFileName = fileNames[0];
+    final String outFileName = fileNames[(fileNames.length == 2) ? 0 : 2];
     byte[] metadata = null;
-    String outFileName = null;
 
     try {
-      inputData = Files.readAllBytes(Paths.get(fileNames[0]));
       metadata = Files.readAllBytes(Paths.get(fileNames[1]));
-      outFileName = fileNames[(fileNames.length == 2) ? 0 : 2];
     } catch (final Exception exception) {
       System.err.println("Error opening files, exception: " + exception);
       log.fine("Error opening files, exception: " + exception);
@@ -138,12 +338,7 @@ public class AddPdfMeta {
     }
 
     try {
-      final PdfReader reader = new PdfReader(new ByteArrayInputStream(inputData));
-      final PdfWriter writer = new PdfWriter(outFileName);
-      final PdfDocument pdfDocument = new ModifiedPdfDocument(reader, writer, metadata);
-      pdfDocument.close();
-      writer.close();
-      reader.close();
+      addMetadata(inFileName, metadata, outFileName);
     } catch (final Exception exception) {
       System.err.println("Error processing files, exception: " + exception);
       log.fine("Error processing files, exception: " + exception);
@@ -25,6 +25,7 @@ package cz.pecina.pdf.addpdfmeta;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfReader;
 import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.StampingProperties;
 import java.util.logging.Logger;
 
 /**
@@ -53,6 +54,26 @@ public class ModifiedPdfDocument extends PdfDocument {
     xmpMetadata = metadata;
   }
 
+  /**
+   * Starts the process of adding extra content to an existing PDF
+   * document, using the specified stamping properties.
+   *
+   * <p>The reader will be closed when this PdfDocument is closed
+   *
+   * @param  reader the original document. It cannot be reused
+   * @param  writer the new writer
+   * @param  properties the stamping properties
+   * @param  metadata the metadata
+   */
+  public ModifiedPdfDocument(
+      final PdfReader reader,
+      final PdfWriter writer,
+      final StampingProperties properties,
+      final byte[] metadata) {
+    super(reader, writer, properties);
+    xmpMetadata = metadata;
+  }
+
   // for description see PdfDocument
   @Override
   protected void updateXmpMetadata() {
@@ -23,18 +23,32 @@
 package cz.pecina.pdf.addpdfstream;
 
 import com.itextpdf.kernel.pdf.CompressionConstants;
+import com.itextpdf.kernel.pdf.PdfArray;
 import com.itextpdf.kernel.pdf.PdfCatalog;
 import com.itextpdf.kernel.pdf.PdfDictionary;
 import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfIndirectReference;
 import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfNumber;
+import com.itextpdf.kernel.pdf.PdfObject;
 import com.itextpdf.kernel.pdf.PdfReader;
 import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.PdfString;
 import com.itextpdf.kernel.pdf.PdfWriter;
-import java.io.ByteArrayInputStream;
+import com.itextpdf.kernel.pdf.StampingProperties;
+import cz.pecina.pdf.util.IncrementalOutputStream;
+import cz.pecina.pdf.util.Metrics;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 import org.apache.commons.cli.CommandLine;
@@ -55,6 +69,17 @@ public class AddPdfStream {
   // static logger
   private static final Logger log = Logger.getLogger(AddPdfStream.class.getName());
 
+  // units used in throughput reports
+  private static final double NANOS_PER_SECOND = 1e9;
+  private static final double BYTES_PER_MB = 1e6;
+
+  // keys used in index entries
+  private static final PdfName STREAM_KEY = new PdfName("Stream");
+  private static final PdfName CHECKSUM_KEY = new PdfName("CheckSum");
+
+  // maximum number of entries or kids of an index node, as in the trees built by iText
+  private static final int NODE_SIZE = 40;
+
   // options
   private static final Options options = new Options();
 
@@ -69,6 +94,13 @@ public class AddPdfStream {
         .longOpt("version")
         .desc("show version")
         .build());
+    options.addOption(
+        Option.builder(null)
+        .longOpt("metrics")
+        .hasArg()
+        .argName("FILE")
+        .desc("write metrics to FILE (\"-\" = standard error)")
+        .build());
     options.addOption(
         Option.builder("t")
         .longOpt("type")
@@ -76,6 +108,13 @@ public class AddPdfStream {
         .argName("TYPE")
         .desc("type of the stream in the catalog (default: Data)")
         .build());
+    options.addOption(
+        Option.builder("n")
+        .longOpt("name")
+        .hasArg()
+        .argName("NAME")
+        .desc("add the stream to the index of type TYPE under NAME")
+        .build());
     options.addOption(
         Option.builder("d")
         .longOpt("dictionary")
@@ -97,6 +136,19 @@ public class AddPdfStream {
         .desc(String.format(
             "compression level (%d-%d)", CompressionConstants.NO_COMPRESSION, CompressionConstants.BEST_COMPRESSION))
         .build());
+    options.addOption(
+        Option.builder("j")
+        .longOpt("threads")
+        .hasArg()
+        .type(Number.class)
+        .argName("THREADS")
+        .desc("number of compression threads (default: 1)")
+        .build());
+    options.addOption(
+        Option.builder("v")
+        .longOpt("verbose")
+        .desc("be more verbose")
+        .build());
   }
 
   // for description see Object
@@ -112,14 +164,281 @@ public class AddPdfStream {
   private static void usage() {
     final HelpFormatter helpFormatter = new HelpFormatter();
     helpFormatter.printHelp("addpdfstream [options] infile streamfile [outfile]", options);
+    System.out.println("\nNamed streams are stored in a name tree, with their sizes and MD5 checksums;");
+    System.out.println("a stream of the same name already present in the index is replaced.");
     System.out.println("\nThe source code is available from <https://github.com/tompecina/pdf>.");
   }
 
+  /**
+   * Writes the stream and adds it to an index.
+   *
+   * <p>The stream is flushed first, so that its size and checksum are
+   * known when the index entry is created.  An entry of the same name
+   * already present in the index is replaced.
+   *
+   * @param pdfDocument the document
+   * @param type        the type of the index
+   * @param entryName   the name of the entry
+   * @param pdfStream   the stream
+   * @param size        the size of the stream data
+   * @param digest      the MD5 digest of the stream data, complete after the stream is flushed
+   */
+  private static void addIndexEntry(
+      final PdfDocument pdfDocument,
+      final PdfName type,
+      final String entryName,
+      final PdfStream pdfStream,
+      final long size,
+      final MessageDigest digest) {
+    final PdfIndirectReference streamReference = pdfStream.getIndirectReference();
+    pdfStream.flush();
+    final PdfDictionary entry = new PdfDictionary();
+    entry.put(STREAM_KEY, streamReference);
+    entry.put(PdfName.Size, new PdfNumber(size));
+    entry.put(CHECKSUM_KEY, new PdfString(digest.digest()).setHexWriting(true));
+    insertEntry(pdfDocument, type, entryName, entry);
+  }
+
+  // gets the key of a leaf entry
+  private static String getKey(final PdfArray names, final int index) {
+    return names.getAsString(2 * index).toUnicodeString();
+  }
+
+  // gets a limit of a node
+  private static String getLimit(final PdfDictionary node, final int index) {
+    return node.getAsArray(PdfName.Limits).getAsString(index).toUnicodeString();
+  }
+
+  // marks a node as modified, or the nearest indirect object containing it
+  private static void setModified(final List<PdfDictionary> path, final int level) {
+    for (int i = level; i >= 0; i--) {
+      if (path.get(i).getIndirectReference() != null) {
+        path.get(i).setModified();
+        return;
+      }
+    }
+  }
+
+  // sets the limits of a node from its entries or kids
+  private static void setLimits(final PdfDictionary node) {
+    final PdfArray names = node.getAsArray(PdfName.Names);
+    final PdfArray limits = new PdfArray();
+    if (names != null) {
+      limits.add(names.getAsString(0).clone());
+      limits.add(names.getAsString(names.size() - 2).clone());
+    } else {
+      final PdfArray kids = node.getAsArray(PdfName.Kids);
+      limits.add(kids.getAsDictionary(0).getAsArray(PdfName.Limits).get(0).clone());
+      limits.add(kids.getAsDictionary(kids.size() - 1).getAsArray(PdfName.Limits).get(1).clone());
+    }
+    node.put(PdfName.Limits, limits);
+  }
+
+  // creates a node holding entries or kids
+  private static PdfDictionary createNode(final PdfDocument pdfDocument, final PdfName key, final PdfArray items) {
+    final PdfDictionary node = new PdfDictionary();
+    node.put(key, items);
+    setLimits(node);
+    node.makeIndirect(pdfDocument);
+    return node;
+  }
+
+  /**
+   * Inserts an entry into a name tree in the catalog.
+   *
+   * <p>Only the nodes on the path from the root to the leaf receiving
+   * the entry are read and modified, so that the incremental update
+   * rewrites O(log n) nodes: the leaf, the ancestors whose limits
+   * change, and, if a node exceeds the size of the nodes of the trees
+   * built by iText, the nodes created by splitting it and its parent.
+   * An entry of the same name is replaced.
+   *
+   * @param pdfDocument the document
+   * @param type        the type of the tree
+   * @param name        the name of the entry
+   * @param value       the value of the entry
+   */
+  private static void insertEntry(
+      final PdfDocument pdfDocument,
+      final PdfName type,
+      final String name,
+      final PdfObject value) {
+
+    final List<PdfDictionary> path = new ArrayList<>();
+    final List<Integer> positions = new ArrayList<>();
+    final PdfDictionary catalog = pdfDocument.getCatalog().getPdfObject();
+    path.add(catalog);
+    PdfDictionary namesDictionary = catalog.getAsDictionary(PdfName.Names);
+    if (namesDictionary == null) {
+      namesDictionary = new PdfDictionary();
+      catalog.put(PdfName.Names, namesDictionary);
+      catalog.setModified();
+    }
+    path.add(namesDictionary);
+    PdfDictionary node = namesDictionary.getAsDictionary(type);
+    if (node == null) {
+      node = new PdfDictionary();
+      node.put(PdfName.Names, new PdfArray());
+      node.makeIndirect(pdfDocument);
+      namesDictionary.put(type, node);
+      setModified(path, path.size() - 1);
+    }
+    final int rootLevel = path.size();
+
+    for (PdfArray kids = node.getAsArray(PdfName.Kids); kids != null; kids = node.getAsArray(PdfName.Kids)) {
+      path.add(node);
+      int low = 0;
+      int high = kids.size() - 1;
+      while (low < high) {
+        final int middle = (low + high + 1) >>> 1;
+        if (getLimit(kids.getAsDictionary(middle), 0).compareTo(name) <= 0) {
+          low = middle;
+        } else {
+          high = middle - 1;
+        }
+      }
+      positions.add(low);
+      node = kids.getAsDictionary(low);
+    }
+    path.add(node);
+
+    PdfArray names = node.getAsArray(PdfName.Names);
+    if (names == null) {
+      names = new PdfArray();
+      node.put(PdfName.Names, names);
+    }
+    int low = 0;
+    int high = (names.size() / 2) - 1;
+    boolean found = false;
+    while (low <= high) {
+      final int middle = (low + high) >>> 1;
+      final int comparison = getKey(names, middle).compareTo(name);
+      if (comparison == 0) {
+        low = middle;
+        found = true;
+        break;
+      } else if (comparison < 0) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    if (found) {
+      names.set((2 * low) + 1, value);
+    } else {
+      names.add(2 * low, new PdfString(name, null));
+      names.add((2 * low) + 1, value);
+    }
+    if (names.getIndirectReference() != null) {
+      names.setModified();
+    }
+    setModified(path, path.size() - 1);
+
+    for (int level = path.size() - 1; level > rootLevel; level--) {
+      final PdfDictionary ancestor = path.get(level);
+      final PdfArray limits = ancestor.getAsArray(PdfName.Limits);
+      if (name.compareTo(limits.getAsString(0).toUnicodeString()) < 0) {
+        limits.set(0, new PdfString(name, null));
+        setModified(path, level);
+      } else if (name.compareTo(limits.getAsString(1).toUnicodeString()) > 0) {
+        limits.set(1, new PdfString(name, null));
+        setModified(path, level);
+      }
+    }
+
+    for (int level = path.size() - 1; level >= rootLevel; level--) {
+      final PdfDictionary full = path.get(level);
+      final PdfName key = full.containsKey(PdfName.Kids) ? PdfName.Kids : PdfName.Names;
+      final int step = key.equals(PdfName.Names) ? 2 : 1;
+      final PdfArray items = full.getAsArray(key);
+      if (items.size() <= (NODE_SIZE * step)) {
+        break;
+      }
+      final int half = (items.size() / step / 2) * step;
+      final PdfArray upper = new PdfArray();
+      for (int i = half; i < items.size(); i++) {
+        upper.add(items.get(i, false));
+      }
+      for (int i = items.size() - 1; i >= half; i--) {
+        items.remove(i);
+      }
+      if (level == rootLevel) {
+        final PdfArray kids = new PdfArray();
+        kids.add(createNode(pdfDocument, key, items).getIndirectReference());
+        kids.add(createNode(pdfDocument, key, upper).getIndirectReference());
+        full.remove(key);
+        full.put(PdfName.Kids, kids);
+      } else {
+        setLimits(full);
+        final PdfArray kids = path.get(level - 1).getAsArray(PdfName.Kids);
+        kids.add(positions.get(level - 1 - rootLevel) + 1, createNode(pdfDocument, key, upper).getIndirectReference());
+        setModified(path, level - 1);
+      }
+      setModified(path, level);
+    }
+  }
+
+  /**
+   * Adds a stream to a document and closes the document.
+   *
+   * @param pdfDocument      the document, opened in append mode
+   * @param streamFileName   the name of the file containing the stream data
+   * @param streamType       the type of the stream in the catalog
+   * @param entryName        the name of the entry in the index of type <code>streamType</code>,
+   *                         or <code>null</code> to put the stream in the catalog
+   * @param pairs            the entries copied to the stream dictionary
+   * @param compressionLevel the compression level, <code>NO_COMPRESSION</code> if the stream is not to be compressed
+   * @param threads          the number of compression threads
+   * @throws IOException on error
+   * @throws GeneralSecurityException if MD5 is not available
+   */
+  public static void addStream(
+      final PdfDocument pdfDocument,
+      final String streamFileName,
+      final String streamType,
+      final String entryName,
+      final Map<String, String> pairs,
+      final int compressionLevel,
+      final int threads) throws IOException, GeneralSecurityException {
+    final boolean compress = (compressionLevel != CompressionConstants.NO_COMPRESSION);
+    try (
+        InputStream fileData = new DigestInputStream(new FileInputStream(streamFileName), MessageDigest.getInstance("MD5"));
+        InputStream streamData = (compress && (threads > 1))
+            ? new ParallelDeflaterInputStream(fileData, compressionLevel, threads) : fileData) {
+      Metrics.countFile(Metrics.BYTES_READ, streamFileName);
+      final PdfStream pdfStream = new PdfStream(pdfDocument, streamData);
+      for (String key : pairs.keySet()) {
+        pdfStream.put(new PdfName(key), new PdfName(pairs.get(key)));
+      }
+      if (streamData != fileData) {
+        pdfStream.setCompressionLevel(CompressionConstants.NO_COMPRESSION);
+        pdfStream.put(PdfName.Filter, PdfName.FlateDecode);
+      } else if (compress) {
+        pdfStream.setCompressionLevel(compressionLevel);
+      }
+      final PdfName streamPdfName = new PdfName(streamType);
+      final PdfCatalog catalog = pdfDocument.getCatalog();
+      if (entryName == null) {
+        if (((PdfDictionary) catalog.getPdfObject()).get(streamPdfName) != null) {
+          catalog.remove(streamPdfName);
+        }
+        catalog.put(streamPdfName, pdfStream);
+      } else {
+        addIndexEntry(pdfDocument, streamPdfName, entryName, pdfStream,
+            Files.size(Paths.get(streamFileName)), ((DigestInputStream) fileData).getMessageDigest());
+      }
+      try (Metrics.Timer writeTimer = Metrics.start("AddPdfStream.write")) {
+        pdfDocument.close();
+      }
+    }
+  }
+
   /**
    * Main method.
    *
    * @param args command-line arguments
    */
+  @SuppressWarnings("checkstyle:MethodLength")
   public static void main(final String[] args) {
     log.fine("Application started");
 
@@ -151,8 +470,14 @@ public class AddPdfStream {
       System.exit(0);
     }
 
+    if (line.hasOption("metrics")) {
+      Metrics.enable("addpdfstream", line.getOptionValue("metrics"));
+    }
+
     final String streamType = (line.hasOption("t") ? line.getOptionValue("t") : "Data");
 
+    final String entryName = line.getOptionValue("n");
+
     final Map<String, String> pairs = new HashMap<>();
     if (line.hasOption("d")) {
       try {
@@ -189,6 +514,24 @@ public class AddPdfStream {
       compressionLevel = CompressionConstants.NO_COMPRESSION;
     }
 
+    int threads = 1;
+    if (line.hasOption("j")) {
+      try {
+        threads = ((Number) line.getParsedOptionValue("j")).intValue();
+      } catch (final Exception exception) {
+        System.err.println("Error in number of threads, exception: " + exception);
+        log.fine("Failed to parse number of threads, exception: " + exception);
+        System.exit(1);
+      }
+      if (threads < 1) {
+        System.err.println("Number of threads must be positive");
+        log.fine("Number of threads out of range");
+        System.exit(1);
+      }
+    }
+
+    final boolean verbose = (line.hasOption("v"));
+
     final String[] fileNames = line.getArgs();
 
     if ((fileNames.length < 2) || (fileNames.length > 3)) {
@@ -197,38 +540,29 @@ public class AddPdfStream {
       System.exit(1);
     }
 
-    byte[] inputData = null;
-    String outFileName = null;
+    final String inFileName = fileNames[0];
+    final String outFileName = fileNames[(fileNames.length == 2) ? 0 : 2];
 
-    try {
-      inputData = Files.readAllBytes(Paths.get(fileNames[0]));
-      outFileName = fileNames[(fileNames.length == 2) ? 0 : 2];
-    } catch (final Exception exception) {
-      System.err.println("Error opening files, exception: " + exception);
-      log.fine("Error opening files, exception: " + exception);
-      System.exit(1);
-    }
+    try (
+        Metrics.Timer timer = Metrics.start("AddPdfStream.add");
+        PdfReader reader = new PdfReader(inFileName);
+        IncrementalOutputStream out = new IncrementalOutputStream(reader, inFileName, outFileName)) {
 
-    try {
-      final PdfReader reader = new PdfReader(new ByteArrayInputStream(inputData));
-      final PdfWriter writer = new PdfWriter(outFileName);
-      final PdfDocument pdfDocument = new PdfDocument(reader, writer);
-      final PdfStream pdfStream = new PdfStream(pdfDocument, new FileInputStream(fileNames[1]));
-      for (String key : pairs.keySet()) {
-        pdfStream.put(new PdfName(key), new PdfName(pairs.get(key)));
-      }
-      if (compress) {
-        pdfStream.setCompressionLevel(compressionLevel);
-      }
-      final PdfName streamPdfName = new PdfName(streamType);
-      final PdfCatalog catalog = pdfDocument.getCatalog();
-      if (((PdfDictionary) catalog.getPdfObject()).get(streamPdfName) != null) {
-        catalog.remove(streamPdfName);
+      try {
+        final long startTime = System.nanoTime();
+        Metrics.countFile(Metrics.BYTES_READ, inFileName);
+        addStream(new PdfDocument(reader, new PdfWriter(out), new StampingProperties().useAppendMode()),
+            fileNames[1], streamType, entryName, pairs, compressionLevel, threads);
+        if (verbose) {
+          final long size = Files.size(Paths.get(fileNames[1]));
+          final double seconds = (System.nanoTime() - startTime) / NANOS_PER_SECOND;
+          System.err.printf("Stream of %d bytes added in %.3f s (%.1f MB/s, %d thread(s))%n",
+              size, seconds, size / seconds / BYTES_PER_MB, threads);
+        }
+      } catch (final IOException | GeneralSecurityException | RuntimeException exception) {
+        out.discard();
+        throw exception;
       }
-      catalog.put(streamPdfName, pdfStream);
-      pdfDocument.close();
-      writer.close();
-      reader.close();
     } catch (final Exception exception) {
       System.err.println("Error processing files, exception: " + exception);
       log.fine("Error processing files, exception: " + exception);
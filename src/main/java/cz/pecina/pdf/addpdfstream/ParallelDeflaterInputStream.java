@@ -0,0 +1,248 @@
+/* ParallelDeflaterInputStream.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+package cz.pecina.pdf.addpdfstream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * Input stream compressing data read from another stream in parallel.
+ *
+ * <p>The data are split into blocks, which are compressed independently
+ * on a thread pool, each primed with the last 32 KiB of the preceding
+ * block and terminated by a sync flush.  The blocks are then joined, in
+ * their original order, into a single zlib stream, suitable for
+ * FlateDecode.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class ParallelDeflaterInputStream extends InputStream {
+
+  // static logger
+  private static final Logger log = Logger.getLogger(ParallelDeflaterInputStream.class.getName());
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "ParallelDeflaterInputStream";
+  }
+
+  // block size
+  private static final int BLOCK_SIZE = 128 * 1024;
+
+  // dictionary size
+  private static final int DICTIONARY_SIZE = 32 * 1024;
+
+  // number of blocks per thread being compressed at a time
+  private static final int BLOCKS_PER_THREAD = 2;
+
+  // zlib header bytes, for the respective FLEVEL values
+  private static final int CMF = 0x78;
+  private static final int[] FLG = {0x01, 0x5e, 0x9c, 0xda};
+
+  // highest compression levels corresponding to FLEVEL values 0-2
+  private static final int[] FLEVEL_LIMITS = {1, 5, 6};
+
+  // source stream
+  private final InputStream in;
+
+  // compression level
+  private final int level;
+
+  // thread pool
+  private final ExecutorService pool;
+
+  // maximum number of blocks being compressed at a time
+  private final int maxPending;
+
+  // blocks being compressed
+  private final Queue<Future<byte[]>> pending = new ArrayDeque<>();
+
+  // checksum of uncompressed data
+  private final Adler32 adler = new Adler32();
+
+  // last 32 KiB of the last block read
+  private byte[] dictionary;
+
+  // current output chunk and position in it
+  private byte[] chunk;
+  private int position;
+
+  // processing state
+  private boolean eof;
+  private boolean finished;
+
+  // statistics
+  private long bytesRead;
+  private long bytesWritten;
+
+  /**
+   * Creates a new compressing stream.
+   *
+   * @param in      the source of uncompressed data
+   * @param level   the compression level (-1 for default, 0-9)
+   * @param threads the number of compression threads
+   */
+  public ParallelDeflaterInputStream(final InputStream in, final int level, final int threads) {
+    this.in = in;
+    this.level = level;
+    pool = Executors.newFixedThreadPool(threads);
+    maxPending = threads * BLOCKS_PER_THREAD;
+    int flevel = 0;
+    final int effectiveLevel = (level == Deflater.DEFAULT_COMPRESSION) ? FLEVEL_LIMITS[2] : level;
+    while ((flevel < FLEVEL_LIMITS.length) && (effectiveLevel > FLEVEL_LIMITS[flevel])) {
+      flevel++;
+    }
+    chunk = new byte[] {(byte) CMF, (byte) FLG[flevel]};
+    log.fine("Parallel deflater set up");
+  }
+
+  /**
+   * Gets the number of uncompressed bytes read so far.
+   *
+   * @return the number of bytes read
+   */
+  public long getBytesRead() {
+    return bytesRead;
+  }
+
+  /**
+   * Gets the number of compressed bytes produced so far.
+   *
+   * @return the number of bytes produced
+   */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  // compresses one block
+  private byte[] compress(final byte[] block, final byte[] blockDictionary, final boolean last) {
+    final Deflater deflater = new Deflater(level, true);
+    try {
+      if (blockDictionary != null) {
+        deflater.setDictionary(blockDictionary);
+      }
+      deflater.setInput(block);
+      if (last) {
+        deflater.finish();
+      }
+      byte[] output = new byte[block.length + (block.length >> 3) + 64];
+      int length = 0;
+      while (true) {
+        if (length == output.length) {
+          output = Arrays.copyOf(output, output.length * 2);
+        }
+        length += deflater.deflate(output, length, output.length - length, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+        if (last ? deflater.finished() : (length < output.length)) {
+          break;
+        }
+      }
+      return Arrays.copyOf(output, length);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  // reads blocks and submits them for compression
+  private void fill() throws IOException {
+    while (!eof && (pending.size() < maxPending)) {
+      final byte[] buffer = new byte[BLOCK_SIZE];
+      final int n = in.readNBytes(buffer, 0, BLOCK_SIZE);
+      final byte[] block = (n == BLOCK_SIZE) ? buffer : Arrays.copyOf(buffer, n);
+      eof = (n < BLOCK_SIZE);
+      adler.update(block);
+      bytesRead += n;
+      final byte[] blockDictionary = dictionary;
+      final boolean last = eof;
+      pending.add(pool.submit(() -> compress(block, blockDictionary, last)));
+      if (n > 0) {
+        dictionary = Arrays.copyOfRange(block, Math.max(0, n - DICTIONARY_SIZE), n);
+      }
+    }
+  }
+
+  // advances to the next output chunk, returns false at the end of data
+  private boolean nextChunk() throws IOException {
+    if (finished) {
+      return false;
+    }
+    fill();
+    final Future<byte[]> next = pending.poll();
+    if (next != null) {
+      try {
+        chunk = next.get();
+      } catch (final InterruptedException | ExecutionException exception) {
+        throw new IOException("Compression failed", exception);
+      }
+    } else {
+      final long checksum = adler.getValue();
+      chunk = new byte[] {(byte) (checksum >> 24), (byte) (checksum >> 16), (byte) (checksum >> 8), (byte) checksum};
+      finished = true;
+    }
+    position = 0;
+    return true;
+  }
+
+  // for description see InputStream
+  @Override
+  public int read() throws IOException {
+    final byte[] b = new byte[1];
+    return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xff);
+  }
+
+  // for description see InputStream
+  @Override
+  public int read(final byte[] b, final int off, final int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    while (position == chunk.length) {
+      if (!nextChunk()) {
+        return -1;
+      }
+    }
+    final int n = Math.min(len, chunk.length - position);
+    System.arraycopy(chunk, position, b, off, n);
+    position += n;
+    bytesWritten += n;
+    return n;
+  }
+
+  // for description see InputStream
+  @Override
+  public void close() throws IOException {
+    pool.shutdownNow();
+    in.close();
+  }
+}
@@ -43,6 +43,7 @@ import com.itextpdf.signatures.CertificateUtil;
 import com.itextpdf.signatures.PdfPKCS7;
 import com.itextpdf.signatures.SignaturePermissions;
 import com.itextpdf.signatures.SignatureUtil;
+import cz.pecina.pdf.util.Metrics;
 import java.security.GeneralSecurityException;
 import java.security.Security;
 import java.security.cert.X509Certificate;
@@ -218,18 +219,15 @@ public class InspectPdf {
     return stringify(obj, 0);
   }
 
-  // set up cryptography
-  private static BouncyCastleProvider setUpCrypto() {
-    BouncyCastleProvider provider = new BouncyCastleProvider();
+  // set up cryptography, only needed if the document is signed
+  private static void setUpCrypto() {
     try {
-      provider = new BouncyCastleProvider();
-      Security.addProvider(provider);
+      Security.addProvider(new BouncyCastleProvider());
     } catch (final Exception exception) {
       System.err.println("Error setting up cryptography, exception: " + exception);
       log.fine("Error setting up cryptography, exception: " + exception);
       System.exit(1);
     }
-    return provider;
   }
 
   /**
@@ -237,6 +235,7 @@ public class InspectPdf {
    *
    * @param args command-line arguments
    */
+  @SuppressWarnings("checkstyle:MethodLength")
   public static void main(final String[] args) {
     log.fine("Application started");
 
@@ -246,11 +245,12 @@ public class InspectPdf {
     final boolean listObjects = parameters.getListObjects();
     final String inFileName = parameters.getInFileName();
 
-    final BouncyCastleProvider provider = setUpCrypto();
-
     try {
-      final PdfReader reader = new PdfReader(inFileName);
-      final PdfDocument pdfDocument = new PdfDocument(reader);
+      final PdfDocument pdfDocument;
+      try (Metrics.Timer timer = Metrics.start("InspectPdf.open")) {
+        pdfDocument = new PdfDocument(new PdfReader(inFileName));
+      }
+      Metrics.countFile(Metrics.BYTES_READ, inFileName);
 
       System.out.println("Version: " + pdfDocument.getPdfVersion());
 
@@ -286,6 +286,7 @@ public class InspectPdf {
       final SignatureUtil util = new SignatureUtil(pdfDocument);
       final List<String> names = util.getSignatureNames();
       if (!names.isEmpty()) {
+        setUpCrypto();
         final PdfAcroForm acroForm = PdfAcroForm.getAcroForm(pdfDocument, false);
         SignaturePermissions permissions = null;
         for (String name : names) {
@@ -293,7 +294,7 @@ public class InspectPdf {
           System.out.println("  Signature covers whole document: " + yn(util.signatureCoversWholeDocument(name)));
           System.out.println("  Document revision: " + util.getRevision(name) + " of " + util.getTotalRevisions());
           PdfPKCS7 pkcs7 = util.readSignatureData(name);
-          try {
+          try (Metrics.Timer timer = Metrics.start("InspectPdf.verify")) {
             pkcs7 = util.readSignatureData(name);
             System.out.println("  Integrity check: " + yn(pkcs7.verifySignatureIntegrityAndAuthenticity()));
           } catch (final PdfException | GeneralSecurityException exception) {
@@ -366,13 +367,15 @@ public class InspectPdf {
       }
 
       if (listObjects) {
-        final int numObjects = pdfDocument.getNumberOfPdfObjects();
-        System.out.println("Number of objects: " + numObjects);
-        System.out.println();
-        for (int i = 0; i < numObjects; i++) {
-          final PdfObject pdfObject = pdfDocument.getPdfObject(i);
-          if (pdfObject != null) {
-            System.out.printf("%d: %s%n", i, stringify(pdfObject));
+        try (Metrics.Timer timer = Metrics.start("InspectPdf.objects")) {
+          final int numObjects = pdfDocument.getNumberOfPdfObjects();
+          System.out.println("Number of objects: " + numObjects);
+          System.out.println();
+          for (int i = 0; i < numObjects; i++) {
+            final PdfObject pdfObject = pdfDocument.getPdfObject(i);
+            if (pdfObject != null) {
+              System.out.printf("%d: %s%n", i, stringify(pdfObject));
+            }
           }
         }
       }
@@ -22,6 +22,7 @@
 
 package cz.pecina.pdf.inspectpdf;
 
+import cz.pecina.pdf.util.Metrics;
 import java.util.logging.Logger;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -55,6 +56,13 @@ public class Parameters {
         .longOpt("version")
         .desc("show version")
         .build());
+    options.addOption(
+        Option.builder(null)
+        .longOpt("metrics")
+        .hasArg()
+        .argName("FILE")
+        .desc("write metrics to FILE (\"-\" = standard error)")
+        .build());
     options.addOption(
         Option.builder("m")
         .longOpt("metadata")
@@ -151,6 +159,10 @@ public class Parameters {
       System.exit(0);
     }
 
+    if (line.hasOption("metrics")) {
+      Metrics.enable("inspectpdf", line.getOptionValue("metrics"));
+    }
+
     printMetadata = line.hasOption("m");
     listObjects = line.hasOption("o");
 
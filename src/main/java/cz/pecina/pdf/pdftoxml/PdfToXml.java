@@ -22,9 +22,11 @@
 
 package cz.pecina.pdf.pdftoxml;
 
+import cz.pecina.pdf.util.Metrics;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
@@ -90,6 +92,13 @@ public class PdfToXml {
         .longOpt("version")
         .desc("show version")
         .build());
+    options.addOption(
+        Option.builder(null)
+        .longOpt("metrics")
+        .hasArg()
+        .argName("FILE")
+        .desc("write metrics to FILE (\"-\" = standard error)")
+        .build());
     options.addOption(
         Option.builder("d")
         .longOpt("decompress")
@@ -295,10 +304,7 @@ public class PdfToXml {
     if (object instanceof COSString) {
       return createDataElement(((COSString) object).getBytes(), "string");
     }
-    System.err.println("Bad PDF object type");
-    log.fine("Bad PDF object type");
-    System.exit(1);
-    return null;
+    throw new IOException("Bad PDF object type");
   }
 
   /**
@@ -311,6 +317,72 @@ public class PdfToXml {
     System.out.println("\nThe source code is available from <https://github.com/tompecina/pdf>.");
   }
 
+  /**
+   * Creates the XML representation of a document.
+   *
+   * @param cosDocument the document
+   * @param decompress  true if streams are to be decompressed
+   * @return the root element
+   * @throws IOException on error
+   */
+  private static Element createPdfElement(final COSDocument cosDocument, final boolean decompress) throws IOException {
+    final Element pdfElement = new Element("pdf", Namespace.getNamespace(NAMESPACE));
+    final Namespace xsiNamespace = Namespace.getNamespace("xsi", XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI);
+    pdfElement.addNamespaceDeclaration(xsiNamespace);
+    pdfElement.setAttribute(
+        "schemaLocation", NAMESPACE + " " + XSD_PREFIX + "pdf-" + PDF_XML_FILE_VERSION + ".xsd", xsiNamespace);
+    pdfElement.setAttribute("version", PDF_XML_FILE_VERSION);
+
+    final Element versionElement = new Element("version", NAMESPACE);
+    versionElement.addContent("" + cosDocument.getVersion());
+    pdfElement.addContent(versionElement);
+
+    final COSDictionary trailer = cosDocument.getTrailer();
+    final Element trailerElement = new Element("trailer", NAMESPACE);
+    trailerElement.addContent(createObjectElement(trailer, decompress));
+    pdfElement.addContent(trailerElement);
+
+    final Element contentElement = new Element("content", NAMESPACE);
+    for (COSObject object : cosDocument.getObjects()) {
+      final Element objectElement = new Element("object", NAMESPACE);
+      objectElement.setAttribute("number", "" + object.getObjectNumber());
+      objectElement.setAttribute("generation", "" + object.getGenerationNumber());
+      objectElement.addContent(createObjectElement(object.getObject(), decompress));
+      contentElement.addContent(objectElement);
+    }
+    pdfElement.addContent(contentElement);
+    return pdfElement;
+  }
+
+  /**
+   * Converts a PDF file to XML.
+   *
+   * @param inFileName   the input file name
+   * @param outputStream the output stream, left open
+   * @param decompress   true if streams are to be decompressed
+   * @throws IOException on error
+   */
+  public static void convert(final String inFileName, final OutputStream outputStream, final boolean decompress)
+      throws IOException {
+    final Element pdfElement;
+    try (PDDocument pdDocument = parse(inFileName)) {
+      Metrics.countFile(Metrics.BYTES_READ, inFileName);
+      try (Metrics.Timer timer = Metrics.start("PdfToXml.convert")) {
+        pdfElement = createPdfElement(pdDocument.getDocument(), decompress);
+      }
+    }
+    try (Metrics.Timer timer = Metrics.start("PdfToXml.write")) {
+      new XMLOutputter(Format.getRawFormat()).output(new Document(pdfElement), outputStream);
+    }
+  }
+
+  // parses the input file
+  private static PDDocument parse(final String inFileName) throws IOException {
+    try (Metrics.Timer timer = Metrics.start("PdfToXml.parse")) {
+      return PDDocument.load(new File(inFileName));
+    }
+  }
+
   /**
    * Main method.
    *
@@ -347,6 +419,10 @@ public class PdfToXml {
       System.exit(0);
     }
 
+    if (line.hasOption("metrics")) {
+      Metrics.enable("pdftoxml", line.getOptionValue("metrics"));
+    }
+
     final boolean decompress = line.hasOption("d");
 
     final String[] fileNames = line.getArgs();
@@ -369,36 +445,11 @@ public class PdfToXml {
     final String inFileName = fileNames[0];
 
     try {
-      final PDDocument pdDocument = PDDocument.load(new File(inFileName));
-      final COSDocument cosDocument = pdDocument.getDocument();
-
-      final Element pdfElement = new Element("pdf", Namespace.getNamespace(NAMESPACE));
-      final Namespace xsiNamespace = Namespace.getNamespace("xsi", XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI);
-      pdfElement.addNamespaceDeclaration(xsiNamespace);
-      pdfElement.setAttribute(
-          "schemaLocation", NAMESPACE + " " + XSD_PREFIX + "pdf-" + PDF_XML_FILE_VERSION + ".xsd", xsiNamespace);
-      pdfElement.setAttribute("version", PDF_XML_FILE_VERSION);
-
-      final Element versionElement = new Element("version", NAMESPACE);
-      versionElement.addContent("" + cosDocument.getVersion());
-      pdfElement.addContent(versionElement);
-
-      final COSDictionary trailer = cosDocument.getTrailer();
-      final Element trailerElement = new Element("trailer", NAMESPACE);
-      trailerElement.addContent(createObjectElement(trailer, decompress));
-      pdfElement.addContent(trailerElement);
-
-      final Element contentElement = new Element("content", NAMESPACE);
-      for (COSObject object : cosDocument.getObjects()) {
-        final Element objectElement = new Element("object", NAMESPACE);
-        objectElement.setAttribute("number", "" + object.getObjectNumber());
-        objectElement.setAttribute("generation", "" + object.getGenerationNumber());
-        objectElement.addContent(createObjectElement(object.getObject(), decompress));
-        contentElement.addContent(objectElement);
+      convert(inFileName, outPrintStream, decompress);
+      if (fileNames.length == 2) {
+        outPrintStream.close();
+        Metrics.countFile(Metrics.BYTES_WRITTEN, fileNames[1]);
       }
-      pdfElement.addContent(contentElement);
-
-      new XMLOutputter(Format.getRawFormat()).output(new Document(pdfElement), outPrintStream);
     } catch (final Exception exception) {
       System.err.println("Error processing files, exception: " + exception);
       log.fine("Error processing files, exception: " + exception);
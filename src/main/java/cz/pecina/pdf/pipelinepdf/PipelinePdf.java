@@ -0,0 +1,371 @@
+/* PipelinePdf.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+package cz.pecina.pdf.pipelinepdf;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.StampingProperties;
+import cz.pecina.pdf.addpdfmeta.ModifiedPdfDocument;
+import cz.pecina.pdf.signboxpdf.FieldSpec;
+import cz.pecina.pdf.signboxpdf.SignBoxPdf;
+import cz.pecina.pdf.signpdf.SignPdf;
+import cz.pecina.pdf.stamppdf.StampPdf;
+import cz.pecina.pdf.util.AtomicFileOutputStream;
+import cz.pecina.pdf.util.IncrementalOutputStream;
+import cz.pecina.pdf.util.Metrics;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+/**
+ * Apply several operations to PDF file in one pass.
+ *
+ * <p>The document is read once, and the stamps and the signature fields
+ * are applied, in the given order, to one PdfDocument, which is written
+ * as a single incremental update.  The metadata, wherever its stage is
+ * given, replace those of the document when it is opened, i.e., before
+ * the other stages are applied.  If the
+ * document is to be signed, the update is kept in memory and the
+ * signature is added to it as the final incremental update, so that
+ * the output file is written only once.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class PipelinePdf {
+
+  // static logger
+  private static final Logger log = Logger.getLogger(PipelinePdf.class.getName());
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "PipelinePdf";
+  }
+
+  // options
+  private static final Options options = new Options();
+
+  static {
+    options.addOption(
+        Option.builder("?")
+        .longOpt("help")
+        .desc("show usage information")
+        .build());
+    options.addOption(
+        Option.builder("V")
+        .longOpt("version")
+        .desc("show version")
+        .build());
+    options.addOption(
+        Option.builder(null)
+        .longOpt("metrics")
+        .hasArg()
+        .argName("FILE")
+        .desc("write metrics to FILE (\"-\" = standard error)")
+        .build());
+  }
+
+  // stage separator
+  private static final String SEPARATOR = "--";
+
+  /**
+   * Operation applied to an open document.
+   */
+  @FunctionalInterface
+  public interface Operation {
+
+    /**
+     * Applies the operation.
+     *
+     * @param pdfDocument the document
+     * @throws IOException on error
+     */
+    void apply(PdfDocument pdfDocument) throws IOException;
+  }
+
+  /**
+   * Prints usage information.
+   *
+   */
+  private static void usage() {
+    final HelpFormatter helpFormatter = new HelpFormatter();
+    helpFormatter.printHelp("pipelinepdf [options] infile [outfile] -- stage [arguments] [-- stage [arguments]]...",
+        options);
+    System.out.println("\nStages, applied in the given order, except for addmeta:");
+    System.out.println("  stamp    [stamppdf options]");
+    System.out.println("  signbox  [signboxpdf options] x y, or [signboxpdf options] -F fieldfile");
+    System.out.println("  addmeta  metadatafile, applied when the document is opened, before other stages");
+    System.out.println("  sign     [signpdf options], must be the last stage");
+    System.out.println("All stages but sign are written in a single incremental update; the signature is always");
+    System.out.println("added as another incremental update.");
+    System.out.println("\nThe source code is available from <https://github.com/tompecina/pdf>.");
+  }
+
+  /**
+   * Applies the operations and the metadata to a document.
+   *
+   * @param reader     the reader of the document
+   * @param writer     the writer of the update
+   * @param operations the operations
+   * @param metadata   the metadata, or <code>null</code> if not to be changed
+   * @throws IOException on error
+   */
+  private static void update(
+      final PdfReader reader,
+      final PdfWriter writer,
+      final List<Operation> operations,
+      final byte[] metadata) throws IOException {
+    final StampingProperties properties = new StampingProperties().useAppendMode();
+    try (PdfDocument pdfDocument = (metadata == null)
+        ? new PdfDocument(reader, writer, properties) : new ModifiedPdfDocument(reader, writer, properties, metadata)) {
+      for (Operation operation : operations) {
+        operation.apply(pdfDocument);
+      }
+    }
+  }
+
+  /**
+   * Processes a PDF file.
+   *
+   * @param inFileName  the input file name
+   * @param outFileName the output file name, may be the same as the input file name
+   * @param operations  the operations
+   * @param metadata    the metadata, or <code>null</code> if not to be changed
+   * @param signPdf     the signer, or <code>null</code> if the document is not to be signed
+   * @throws IOException              on error
+   * @throws GeneralSecurityException on error in signing
+   */
+  public static void process(
+      final String inFileName,
+      final String outFileName,
+      final List<Operation> operations,
+      final byte[] metadata,
+      final SignPdf signPdf) throws IOException, GeneralSecurityException {
+    try (Metrics.Timer timer = Metrics.start("PipelinePdf.process")) {
+      if (signPdf == null) {
+        try (PdfReader reader = new PdfReader(inFileName);
+            IncrementalOutputStream out = new IncrementalOutputStream(reader, inFileName, outFileName)) {
+          Metrics.countFile(Metrics.BYTES_READ, inFileName);
+          try {
+            update(reader, new PdfWriter(out), operations, metadata);
+          } catch (final IOException | RuntimeException exception) {
+            out.discard();
+            throw exception;
+          }
+        }
+        return;
+      }
+      byte[] updated = null;
+      if (!operations.isEmpty() || (metadata != null)) {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (Metrics.Timer updateTimer = Metrics.start("PipelinePdf.update");
+            PdfReader reader = new PdfReader(inFileName)) {
+          Metrics.countFile(Metrics.BYTES_READ, inFileName);
+          update(reader, new PdfWriter(buffer), operations, metadata);
+        }
+        updated = buffer.toByteArray();
+      }
+      final AtomicFileOutputStream out = new AtomicFileOutputStream(outFileName);
+      try (PdfReader reader = (updated == null)
+          ? new PdfReader(inFileName) : new PdfReader(new ByteArrayInputStream(updated))) {
+        if (updated == null) {
+          Metrics.countFile(Metrics.BYTES_READ, inFileName);
+        }
+        signPdf.sign(reader, out, new StampingProperties().preserveEncryption().useAppendMode());
+        out.commit();
+      } finally {
+        out.discard();
+      }
+    }
+  }
+
+  /**
+   * Splits the stages of the pipeline.
+   *
+   * @param args the arguments following the first separator
+   * @return the list of stages, each starting with its name
+   */
+  private static List<String[]> splitStages(final String[] args) {
+    final List<String[]> stages = new ArrayList<>();
+    int start = 0;
+    for (int i = 0; i <= args.length; i++) {
+      if ((i == args.length) || SEPARATOR.equals(args[i])) {
+        stages.add(Arrays.copyOfRange(args, start, i));
+        start = i + 1;
+      }
+    }
+    return stages;
+  }
+
+  /**
+   * Appends the file names to the arguments of a stage, so that they
+   * can be parsed by the parameters of the utility.
+   *
+   * @param stage       the stage, starting with its name
+   * @param inFileName  the input file name
+   * @param outFileName the output file name
+   * @return the arguments
+   */
+  private static String[] getArguments(final String[] stage, final String inFileName, final String outFileName) {
+    final String[] arguments = Arrays.copyOfRange(stage, 1, stage.length + 2);
+    arguments[stage.length - 1] = inFileName;
+    arguments[stage.length] = outFileName;
+    return arguments;
+  }
+
+  /**
+   * Main method.
+   *
+   * @param args command-line arguments
+   */
+  public static void main(final String[] args) {
+    log.fine("Application started");
+
+    final int separator = (args == null) ? -1 : Arrays.asList(args).indexOf(SEPARATOR);
+
+    final CommandLineParser parser = new DefaultParser();
+    CommandLine line = null;
+    try {
+      line = parser.parse(options, (separator < 0) ? args : Arrays.copyOfRange(args, 0, separator));
+    } catch (final Exception exception) {
+      usage();
+      log.fine("Failed to parse the command line, exception: " + exception);
+      System.exit(1);
+    }
+
+    if (line.hasOption("?")) {
+      usage();
+      log.fine("Application terminated normally");
+      System.exit(0);
+    }
+
+    if (line.hasOption("V")) {
+      System.err.println("1.0.0");
+      log.fine("Application terminated normally");
+      System.exit(0);
+    }
+
+    if (line.hasOption("metrics")) {
+      Metrics.enable("pipelinepdf", line.getOptionValue("metrics"));
+    }
+
+    final String[] fileNames = line.getArgs();
+
+    if ((separator < 0) || (fileNames.length < 1) || (fileNames.length > 2)) {
+      usage();
+      log.fine("Error in parameters");
+      System.exit(1);
+    }
+
+    final String inFileName = fileNames[0];
+    final String outFileName = fileNames[fileNames.length - 1];
+    final List<String[]> stages = splitStages(Arrays.copyOfRange(args, separator + 1, args.length));
+    final List<Operation> operations = new ArrayList<>();
+    byte[] metadata = null;
+    SignPdf signPdf = null;
+
+    try {
+      for (int i = 0; i < stages.size(); i++) {
+        final String[] stage = stages.get(i);
+        if (stage.length == 0) {
+          throw new IllegalArgumentException("Empty stage");
+        }
+        switch (stage[0]) {
+          case "stamp": {
+            final StampPdf stampPdf = new StampPdf(
+                new cz.pecina.pdf.stamppdf.Parameters(getArguments(stage, inFileName, outFileName)));
+            operations.add(stampPdf::stamp);
+            break;
+          }
+          case "signbox": {
+            final cz.pecina.pdf.signboxpdf.Parameters parameters =
+                new cz.pecina.pdf.signboxpdf.Parameters(getArguments(stage, inFileName, outFileName));
+            if (parameters.getBatchFileName() != null) {
+              throw new IllegalArgumentException("Batch processing not supported in pipeline");
+            }
+            final List<FieldSpec> specs = (parameters.getFieldFileName() == null)
+                ? Collections.singletonList(new FieldSpec(parameters.getPage(), parameters.getXOffset(),
+                    parameters.getYOffset(), parameters.getWidth(), parameters.getHeight(),
+                    parameters.getSignatureFieldName()))
+                : FieldSpec.read(
+                    parameters.getFieldFileName(), parameters.getPage(), parameters.getWidth(), parameters.getHeight());
+            operations.add(pdfDocument -> SignBoxPdf.addFields(pdfDocument, specs));
+            break;
+          }
+          case "addmeta": {
+            if ((stage.length != 2) || (metadata != null)) {
+              throw new IllegalArgumentException("Invalid metadata stage");
+            }
+            metadata = Files.readAllBytes(Paths.get(stage[1]));
+            break;
+          }
+          case "sign": {
+            if (i != (stages.size() - 1)) {
+              throw new IllegalArgumentException("Signing must be the last stage");
+            }
+            signPdf = new SignPdf(new cz.pecina.pdf.signpdf.Parameters(getArguments(stage, inFileName, outFileName)));
+            break;
+          }
+          default: {
+            throw new IllegalArgumentException("Unknown stage: " + stage[0]);
+          }
+        }
+      }
+    } catch (final IllegalArgumentException exception) {
+      System.err.println(exception.getMessage());
+      usage();
+      log.fine("Error in stages, exception: " + exception);
+      System.exit(1);
+    } catch (final Exception exception) {
+      System.err.println("Error setting up stages, exception: " + exception);
+      log.fine("Error setting up stages, exception: " + exception);
+      System.exit(1);
+    }
+
+    try {
+      process(inFileName, outFileName, operations, metadata, signPdf);
+    } catch (final Exception exception) {
+      System.err.println("Error processing files, exception: " + exception);
+      log.fine("Error processing files, exception: " + exception);
+      System.exit(1);
+    }
+
+    log.fine("Application terminated normally");
+  }
+}
@@ -22,12 +22,28 @@
 
 package cz.pecina.pdf.readpdfstream;
 
+import com.itextpdf.io.source.PdfTokenizer;
+import com.itextpdf.io.source.RandomAccessFileOrArray;
+import com.itextpdf.kernel.pdf.PdfArray;
 import com.itextpdf.kernel.pdf.PdfDictionary;
 import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfIndirectReference;
 import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfObject;
 import com.itextpdf.kernel.pdf.PdfReader;
 import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.PdfString;
+import cz.pecina.pdf.util.Metrics;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
 import java.util.logging.Logger;
+import java.util.zip.InflaterOutputStream;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -60,6 +76,13 @@ public class ReadPdfStream {
         .longOpt("version")
         .desc("show version")
         .build());
+    options.addOption(
+        Option.builder(null)
+        .longOpt("metrics")
+        .hasArg()
+        .argName("FILE")
+        .desc("write metrics to FILE (\"-\" = standard error)")
+        .build());
     options.addOption(
         Option.builder("t")
         .longOpt("type")
@@ -67,6 +90,23 @@ public class ReadPdfStream {
         .argName("TYPE")
         .desc("type of the stream in the catalog (default: Data)")
         .build());
+    options.addOption(
+        Option.builder("n")
+        .longOpt("name")
+        .hasArg()
+        .argName("NAME")
+        .desc("read the stream stored under NAME in the index of type TYPE")
+        .build());
+    options.addOption(
+        Option.builder("L")
+        .longOpt("list")
+        .desc("list the streams in the index of type TYPE")
+        .build());
+    options.addOption(
+        Option.builder("r")
+        .longOpt("raw")
+        .desc("output raw stream data, without decoding")
+        .build());
     options.addOption(
         Option.builder("v")
         .longOpt("verbose")
@@ -86,10 +126,193 @@ public class ReadPdfStream {
    */
   private static void usage() {
     final HelpFormatter helpFormatter = new HelpFormatter();
-    helpFormatter.printHelp("readpdfstream [options] infile", options);
+    helpFormatter.printHelp("readpdfstream [options] infile [outfile]", options);
     System.out.println("\nThe source code is available from <https://github.com/tompecina/pdf>.");
   }
 
+  // keys used in index entries
+  private static final PdfName STREAM_KEY = new PdfName("Stream");
+  private static final PdfName CHECKSUM_KEY = new PdfName("CheckSum");
+
+  // size of the copy buffer
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  // gets the key of a name tree leaf entry
+  private static String getKey(final PdfArray names, final int index) {
+    return names.getAsString(2 * index).toUnicodeString();
+  }
+
+  /**
+   * Looks up an entry in a name tree.
+   *
+   * <p>Only the nodes on the path from the root to the leaf containing
+   * the entry are read, using binary search at every level.
+   *
+   * @param root the root node of the tree
+   * @param name the name of the entry
+   * @return the entry, or null if not found
+   */
+  public static PdfObject findEntry(final PdfDictionary root, final String name) {
+    PdfDictionary node = root;
+    while (node != null) {
+      final PdfArray names = node.getAsArray(PdfName.Names);
+      if (names != null) {
+        int low = 0;
+        int high = (names.size() / 2) - 1;
+        while (low <= high) {
+          final int middle = (low + high) >>> 1;
+          final int comparison = getKey(names, middle).compareTo(name);
+          if (comparison == 0) {
+            return names.get((2 * middle) + 1);
+          } else if (comparison < 0) {
+            low = middle + 1;
+          } else {
+            high = middle - 1;
+          }
+        }
+        return null;
+      }
+      final PdfArray kids = node.getAsArray(PdfName.Kids);
+      node = null;
+      if (kids != null) {
+        int low = 0;
+        int high = kids.size() - 1;
+        while (low <= high) {
+          final int middle = (low + high) >>> 1;
+          final PdfDictionary kid = kids.getAsDictionary(middle);
+          final PdfArray limits = kid.getAsArray(PdfName.Limits);
+          if (name.compareTo(limits.getAsString(0).toUnicodeString()) < 0) {
+            high = middle - 1;
+          } else if (name.compareTo(limits.getAsString(1).toUnicodeString()) > 0) {
+            low = middle + 1;
+          } else {
+            node = kid;
+            break;
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  // formats a checksum as a hexadecimal string
+  private static String toHex(final PdfString checkSum) {
+    return String.format("%032x", new BigInteger(1, checkSum.getValueBytes()));
+  }
+
+  // lists entries of a name tree
+  private static void listEntries(final PdfDictionary node) {
+    final PdfArray names = node.getAsArray(PdfName.Names);
+    if (names != null) {
+      for (int i = 0; i < (names.size() / 2); i++) {
+        final PdfDictionary entry = names.getAsDictionary((2 * i) + 1);
+        final PdfString checkSum = (entry == null) ? null : entry.getAsString(CHECKSUM_KEY);
+        System.out.printf("%s %s %s%n", getKey(names, i),
+            ((entry == null) || (entry.getAsNumber(PdfName.Size) == null))
+                ? "-" : entry.getAsNumber(PdfName.Size).longValue(),
+            (checkSum == null) ? "-" : toHex(checkSum));
+      }
+    }
+    final PdfArray kids = node.getAsArray(PdfName.Kids);
+    if (kids != null) {
+      for (int i = 0; i < kids.size(); i++) {
+        listEntries(kids.getAsDictionary(i));
+      }
+    }
+  }
+
+  // checks whether the stream can be decoded on the fly
+  private static boolean isStreamable(final PdfStream pdfStream) {
+    PdfObject filter = pdfStream.get(PdfName.Filter);
+    if ((filter != null) && filter.isArray()) {
+      final PdfArray filters = (PdfArray) filter;
+      if (filters.size() > 1) {
+        return false;
+      }
+      filter = filters.isEmpty() ? null : filters.get(0);
+    }
+    return (filter == null)
+        || (PdfName.FlateDecode.equals(filter) && !pdfStream.containsKey(PdfName.DecodeParms));
+  }
+
+  // finds the position of the stream data in the file
+  private static long findStreamData(final PdfTokenizer tokens, final PdfIndirectReference ref) throws IOException {
+    tokens.seek(ref.getOffset());
+    tokens.nextValidToken();
+    if (tokens.getTokenType() != PdfTokenizer.TokenType.Obj) {
+      throw new IOException("Stream object not found");
+    }
+    int level = 0;
+    do {
+      tokens.nextValidToken();
+      if (tokens.getTokenType() == PdfTokenizer.TokenType.StartDic) {
+        level++;
+      } else if (tokens.getTokenType() == PdfTokenizer.TokenType.EndDic) {
+        level--;
+      }
+    } while (level > 0);
+    tokens.nextToken();
+    if (!tokens.tokenValueEqualsTo(PdfTokenizer.Stream)) {
+      throw new IOException("Stream data not found");
+    }
+    int ch;
+    do {
+      ch = tokens.read();
+    } while ((ch == ' ') || (ch == '\t') || (ch == 0) || (ch == '\f'));
+    if (ch != '\n') {
+      ch = tokens.read();
+    }
+    if (ch != '\n') {
+      tokens.backOnePosition(ch);
+    }
+    return tokens.getPosition();
+  }
+
+  /**
+   * Copies stream data to an output stream.
+   *
+   * <p>Unencrypted streams, either unfiltered or Flate-encoded without
+   * predictors, are read from the file and decoded on the fly, using
+   * a fixed-size buffer.  Other streams are decoded in memory.
+   *
+   * @param reader    the reader the document is read from
+   * @param pdfStream the stream
+   * @param raw       if true, the data are not decoded
+   * @param out       the output stream
+   * @throws IOException on error
+   */
+  public static void copyStream(
+      final PdfReader reader, final PdfStream pdfStream, final boolean raw, final OutputStream out)
+      throws IOException {
+    final PdfIndirectReference ref = pdfStream.getIndirectReference();
+    if (reader.isEncrypted() || (ref == null) || (!raw && !isStreamable(pdfStream))) {
+      log.fine("Stream decoded in memory");
+      out.write(pdfStream.getBytes(!raw));
+      return;
+    }
+    final long length = pdfStream.getAsNumber(PdfName.Length).longValue();
+    final RandomAccessFileOrArray file = reader.getSafeFile();
+    try (PdfTokenizer tokens = new PdfTokenizer(file)) {
+      file.seek(findStreamData(tokens, ref));
+      final OutputStream sink = (raw || !pdfStream.containsKey(PdfName.Filter))
+          ? out : new InflaterOutputStream(out);
+      final byte[] buffer = new byte[BUFFER_SIZE];
+      long remaining = length;
+      while (remaining > 0) {
+        final int n = file.read(buffer, 0, (int) Math.min(remaining, BUFFER_SIZE));
+        if (n < 0) {
+          throw new IOException("Unexpected end of file");
+        }
+        sink.write(buffer, 0, n);
+        remaining -= n;
+      }
+      if (sink != out) {
+        ((InflaterOutputStream) sink).finish();
+      }
+    }
+    log.fine("Stream copied");
+  }
+
   /**
    * Main method.
    *
@@ -126,13 +349,23 @@ public class ReadPdfStream {
       System.exit(0);
     }
 
+    if (line.hasOption("metrics")) {
+      Metrics.enable("readpdfstream", line.getOptionValue("metrics"));
+    }
+
     final String streamType = (line.hasOption("t") ? line.getOptionValue("t") : "Data");
 
     final boolean verbose = (line.hasOption("v"));
 
+    final boolean raw = (line.hasOption("r"));
+
+    final String entryName = line.getOptionValue("n");
+
+    final boolean list = (line.hasOption("L"));
+
     final String[] fileNames = line.getArgs();
 
-    if (fileNames.length != 1) {
+    if ((fileNames.length < 1) || (fileNames.length > 2)) {
       usage();
       log.fine("Error in parameters");
       System.exit(1);
@@ -142,23 +375,71 @@ public class ReadPdfStream {
 
     try {
       final PdfReader reader = new PdfReader(inFileName);
-      final PdfDocument pdfDocument = new PdfDocument(reader);
+      final PdfDocument pdfDocument;
+      try (Metrics.Timer timer = Metrics.start("ReadPdfStream.open")) {
+        pdfDocument = new PdfDocument(reader);
+      }
+      Metrics.countFile(Metrics.BYTES_READ, inFileName);
       final PdfDictionary catalog = (PdfDictionary) pdfDocument.getCatalog().getPdfObject();
       final PdfName streamPdfName = new PdfName(streamType);
-      if (!catalog.containsKey(streamPdfName)) {
-        System.err.println("Stream '" + streamType + "' not found");
-        log.fine("Stream not found");
-        System.exit(1);
+      PdfStream pdfStream = null;
+      PdfDictionary entry = null;
+      if ((entryName == null) && !list) {
+        if (!catalog.containsKey(streamPdfName)) {
+          System.err.println("Stream '" + streamType + "' not found");
+          log.fine("Stream not found");
+          System.exit(1);
+        }
+        pdfStream = catalog.getAsStream(streamPdfName);
+      } else {
+        final PdfDictionary names = catalog.getAsDictionary(PdfName.Names);
+        final PdfDictionary index = (names == null) ? null : names.getAsDictionary(streamPdfName);
+        if (index == null) {
+          System.err.println("Index '" + streamType + "' not found");
+          log.fine("Index not found");
+          System.exit(1);
+        }
+        if (list) {
+          listEntries(index);
+          log.fine("Application terminated normally");
+          return;
+        }
+        final PdfObject found = findEntry(index, entryName);
+        if ((found == null) || !found.isDictionary()) {
+          System.err.println("Stream '" + entryName + "' not found");
+          log.fine("Stream not found");
+          System.exit(1);
+        }
+        entry = (PdfDictionary) found;
+        pdfStream = entry.getAsStream(STREAM_KEY);
       }
-      final PdfStream pdfStream = catalog.getAsStream(streamPdfName);
       if (verbose) {
         System.out.println("Dictionary:");
         for (PdfName key : pdfStream.keySet()) {
           System.out.println("  " + key + ": " + pdfStream.get(key));
         }
+        if (entry != null) {
+          System.out.println("  Size: " + entry.get(PdfName.Size));
+          final PdfString checkSum = entry.getAsString(CHECKSUM_KEY);
+          System.out.println("  CheckSum: " + ((checkSum == null) ? "-" : toHex(checkSum)));
+        }
         System.out.println();
       }
-      System.out.print(new String(pdfStream.getBytes(), "utf-8"));
+      final PdfString checkSum = ((entry == null) || raw) ? null : entry.getAsString(CHECKSUM_KEY);
+      final MessageDigest digest = MessageDigest.getInstance("MD5");
+      try (Metrics.Timer timer = Metrics.start("ReadPdfStream.copy");
+          OutputStream out = new DigestOutputStream(new BufferedOutputStream(
+              (fileNames.length == 1) ? System.out : new FileOutputStream(fileNames[1]), BUFFER_SIZE), digest)) {
+        copyStream(reader, pdfStream, raw, out);
+      }
+      if (fileNames.length == 2) {
+        Metrics.countFile(Metrics.BYTES_WRITTEN, fileNames[1]);
+      }
+      if ((checkSum != null) && !Arrays.equals(checkSum.getValueBytes(), digest.digest())) {
+        System.err.println("Checksum mismatch");
+        log.fine("Checksum mismatch");
+        System.exit(1);
+      }
     } catch (final Exception exception) {
       System.err.println("Error processing files, exception: " + exception);
       log.fine("Error processing files, exception: " + exception);
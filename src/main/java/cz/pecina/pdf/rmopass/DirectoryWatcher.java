@@ -0,0 +1,230 @@
+/* DirectoryWatcher.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+package cz.pecina.pdf.rmopass;
+
+import cz.pecina.pdf.util.BatchRunner;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Watcher of the input directory.
+ *
+ * <p>PDF files present in the watched directory at startup, unless
+ * already processed, and PDF files added to it later are submitted to
+ * a batch runner.  A file is submitted only after its size and
+ * modification time have not changed for one polling interval, so that
+ * files still being copied into the directory are not processed
+ * prematurely.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class DirectoryWatcher {
+
+  // static logger
+  private static final Logger log = Logger.getLogger(DirectoryWatcher.class.getName());
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "DirectoryWatcher";
+  }
+
+  // polling interval in milliseconds
+  private static final long POLL_INTERVAL = 500;
+
+  // conversion factor
+  private static final long MILLIS_PER_SECOND = 1000;
+
+  // directories
+  private final Path directory;
+  private final Path outputDirectory;
+
+  // true if processed files are to be deleted
+  private final boolean delete;
+
+  // status report interval in milliseconds, 0 if no reports
+  private final long statusInterval;
+
+  // batch runner
+  private final BatchRunner runner;
+
+  // files waiting to settle, with their last seen state
+  private final Map<Path, String> waiting = new HashMap<>();
+
+  // files submitted to the runner, with their state when submitted
+  private final Map<Path, String> submitted = new ConcurrentHashMap<>();
+
+  /**
+   * Creates the watcher.
+   *
+   * @param directory       the watched directory
+   * @param outputDirectory the output directory
+   * @param delete          true if processed files are to be deleted
+   * @param statusInterval  status report interval in seconds, 0 if no reports
+   * @param runner          the batch runner
+   * @throws IOException if the directories are not valid
+   */
+  public DirectoryWatcher(
+      final String directory,
+      final String outputDirectory,
+      final boolean delete,
+      final int statusInterval,
+      final BatchRunner runner) throws IOException {
+    this.directory = Paths.get(directory);
+    this.outputDirectory = Paths.get(outputDirectory);
+    if (!Files.isDirectory(this.directory) || !Files.isDirectory(this.outputDirectory)) {
+      throw new IOException("Directory not found");
+    }
+    if (Files.isSameFile(this.directory, this.outputDirectory)) {
+      throw new IOException("Output directory must differ from watched directory");
+    }
+    this.delete = delete;
+    this.statusInterval = statusInterval * MILLIS_PER_SECOND;
+    this.runner = runner;
+  }
+
+  // gets the state of a file, or null if it is not a regular file
+  private static String getState(final Path path) {
+    try {
+      if (Files.isRegularFile(path)) {
+        return Files.size(path) + "/" + Files.getLastModifiedTime(path).toMillis();
+      }
+    } catch (final IOException exception) {
+      log.fine("Failed to get file state, exception: " + exception);
+    }
+    return null;
+  }
+
+  // adds a file to the waiting files if it is to be processed
+  private void consider(final Path path) {
+    if (path.getFileName().toString().toLowerCase().endsWith(".pdf")) {
+      final String state = getState(path);
+      if ((state != null) && !state.equals(submitted.get(path))) {
+        waiting.putIfAbsent(path, "");
+      }
+    }
+  }
+
+  // considers all files in the directory
+  private void scan() throws IOException {
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+      for (Path path : paths) {
+        consider(path);
+      }
+    }
+    log.fine("Directory scanned");
+  }
+
+  // submits files that have settled
+  private void submitSettled() throws InterruptedException {
+    for (Iterator<Map.Entry<Path, String>> iterator = waiting.entrySet().iterator(); iterator.hasNext();) {
+      final Map.Entry<Path, String> entry = iterator.next();
+      final Path path = entry.getKey();
+      final String state = getState(path);
+      if (state == null) {
+        iterator.remove();
+      } else if (!state.equals(entry.getValue())) {
+        entry.setValue(state);
+      } else {
+        iterator.remove();
+        submitted.put(path, state);
+        final Path outPath = outputDirectory.resolve(path.getFileName());
+        runner.submit(path.toString(), () -> {
+          try {
+            runner.process(() -> RmOPass.removePassword(path.toString(), outPath.toString()));
+          } catch (final Exception exception) {
+            submitted.remove(path);
+            throw exception;
+          }
+          if (delete) {
+            Files.delete(path);
+            submitted.remove(path);
+          }
+        });
+      }
+    }
+  }
+
+  /**
+   * Watches the directory until interrupted.
+   *
+   * @throws IOException          on error
+   * @throws InterruptedException if interrupted
+   */
+  public void watch() throws IOException, InterruptedException {
+    try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+      directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+      log.fine("Watching directory: " + directory);
+      try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+        for (Path path : paths) {
+          final Path outPath = outputDirectory.resolve(path.getFileName());
+          if (!Files.exists(outPath)
+              || (Files.getLastModifiedTime(outPath).compareTo(Files.getLastModifiedTime(path)) < 0)) {
+            consider(path);
+          }
+        }
+      }
+      long lastCheck = System.currentTimeMillis();
+      long lastStatus = lastCheck;
+      while (true) {
+        final WatchKey key = watchService.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+        if (key != null) {
+          for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+              scan();
+            } else {
+              consider(directory.resolve((Path) event.context()));
+            }
+          }
+          if (!key.reset()) {
+            throw new IOException("Watched directory no longer accessible");
+          }
+        }
+        final long now = System.currentTimeMillis();
+        if ((now - lastCheck) >= POLL_INTERVAL) {
+          submitSettled();
+          lastCheck = now;
+        }
+        if ((statusInterval > 0) && ((now - lastStatus) >= statusInterval)) {
+          System.out.println("Status: waiting " + waiting.size() + ", " + runner.getStatus());
+          lastStatus = now;
+        }
+      }
+    }
+  }
+}
@@ -54,6 +54,19 @@ public class ModifiedPdfReader extends PdfReader {
     super(stream);
   }
 
+  /**
+   * Reads and parses a PDF document.
+   *
+   * <p>The document is read from the file on demand, not loaded into
+   * memory.
+   *
+   * @param filename the file name
+   * @throws IOException on error
+   */
+  public ModifiedPdfReader(final String filename) throws IOException {
+    super(filename);
+  }
+
   /**
    * Resets the encrypted flag.
    */
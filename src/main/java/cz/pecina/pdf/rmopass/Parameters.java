@@ -22,6 +22,7 @@
 
 package cz.pecina.pdf.rmopass;
 
+import cz.pecina.pdf.util.Metrics;
 import java.util.Arrays;
 import java.util.logging.Logger;
 import org.apache.commons.cli.CommandLine;
@@ -56,6 +57,55 @@ public class Parameters {
         .longOpt("version")
         .desc("show version")
         .build());
+    options.addOption(
+        Option.builder(null)
+        .longOpt("metrics")
+        .hasArg()
+        .argName("FILE")
+        .desc("write metrics to FILE (\"-\" = standard error)")
+        .build());
+    options.addOption(
+        Option.builder("b")
+        .longOpt("batch")
+        .hasArg()
+        .argName("MANIFEST")
+        .desc("process files listed in manifest")
+        .build());
+    options.addOption(
+        Option.builder("w")
+        .longOpt("watch")
+        .hasArg()
+        .argName("DIR")
+        .desc("watch directory for new files")
+        .build());
+    options.addOption(
+        Option.builder("o")
+        .longOpt("output")
+        .hasArg()
+        .argName("DIR")
+        .desc("output directory for watch mode")
+        .build());
+    options.addOption(
+        Option.builder("d")
+        .longOpt("delete")
+        .desc("delete processed files in watch mode")
+        .build());
+    options.addOption(
+        Option.builder("j")
+        .longOpt("threads")
+        .hasArg()
+        .type(Number.class)
+        .argName("THREADS")
+        .desc("number of documents processed at a time (default: number of processors)")
+        .build());
+    options.addOption(
+        Option.builder("s")
+        .longOpt("status")
+        .hasArg()
+        .type(Number.class)
+        .argName("SECONDS")
+        .desc("status report interval in watch mode (default: 60, 0 = no reports)")
+        .build());
   }
 
   // for description see Object
@@ -70,13 +120,83 @@ public class Parameters {
    */
   public void usage() {
     final HelpFormatter helpFormatter = new HelpFormatter();
-    helpFormatter.printHelp("rmopass [options] infile [outfile]", options);
+    helpFormatter.printHelp("rmopass [options] infile [outfile]\n"
+        + "       rmopass [options] -b manifest\n"
+        + "       rmopass [options] -w dir -o dir", options);
+    System.out.println("\nNotes:");
+    System.out.println("  - Manifest is a CSV file with a header or a JSONL file, with the fields input and output");
+    System.out.println("    (default: input file)");
+    System.out.println("  - In watch mode, PDF files present in or added to the watched directory are processed");
+    System.out.println("    and the results written to the output directory under the same names");
     System.out.println("\nThe source code is available from <https://github.com/tompecina/pdf>.");
   }
 
+  // constants
+  private static final int DEFAULT_STATUS_INTERVAL = 60;
+
   // parsed parameters
+  private String batchFileName;
+  private String watchDirectory;
+  private String outputDirectory;
+  private boolean delete;
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private int statusInterval = DEFAULT_STATUS_INTERVAL;
   private String[] fileNames;
 
+  /**
+   * Gets the manifest file name.
+   *
+   * @return the manifest file name, or null if not in batch mode
+   */
+  public String getBatchFileName() {
+    return batchFileName;
+  }
+
+  /**
+   * Gets the watched directory.
+   *
+   * @return the watched directory, or null if not in watch mode
+   */
+  public String getWatchDirectory() {
+    return watchDirectory;
+  }
+
+  /**
+   * Gets the output directory.
+   *
+   * @return the output directory
+   */
+  public String getOutputDirectory() {
+    return outputDirectory;
+  }
+
+  /**
+   * Gets the delete flag.
+   *
+   * @return true if processed files are to be deleted
+   */
+  public boolean getDelete() {
+    return delete;
+  }
+
+  /**
+   * Gets the number of threads.
+   *
+   * @return the number of threads
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Gets the status report interval.
+   *
+   * @return the interval in seconds, 0 if no reports
+   */
+  public int getStatusInterval() {
+    return statusInterval;
+  }
+
   /**
    * Gets file names.
    *
@@ -141,9 +261,55 @@ public class Parameters {
       System.exit(0);
     }
 
+    if (line.hasOption("metrics")) {
+      Metrics.enable("rmopass", line.getOptionValue("metrics"));
+    }
+
+    if (line.hasOption("j")) {
+      try {
+        threads = ((Number) line.getParsedOptionValue("j")).intValue();
+      } catch (final Exception exception) {
+        System.err.println("Error in number of threads, exception: " + exception);
+        log.fine("Failed to parse number of threads, exception: " + exception);
+        System.exit(1);
+      }
+      if (threads < 1) {
+        System.err.println("Number of threads must be positive");
+        log.fine("Number of threads out of range");
+        System.exit(1);
+      }
+    }
+
+    if (line.hasOption("s")) {
+      try {
+        statusInterval = ((Number) line.getParsedOptionValue("s")).intValue();
+      } catch (final Exception exception) {
+        System.err.println("Error in status report interval, exception: " + exception);
+        log.fine("Failed to parse status report interval, exception: " + exception);
+        System.exit(1);
+      }
+      if (statusInterval < 0) {
+        System.err.println("Status report interval must not be negative");
+        log.fine("Status report interval out of range");
+        System.exit(1);
+      }
+    }
+
+    batchFileName = line.getOptionValue("b");
+    watchDirectory = line.getOptionValue("w");
+    outputDirectory = line.getOptionValue("o");
+    delete = line.hasOption("d");
+
     final String[] remArgs = line.getArgs();
 
-    if ((remArgs.length < 1) || (remArgs.length > 2)) {
+    if ((batchFileName != null) || (watchDirectory != null)) {
+      if ((remArgs.length > 0) || ((batchFileName != null) && (watchDirectory != null))
+          || ((watchDirectory == null) != (outputDirectory == null)) || (delete && (watchDirectory == null))) {
+        usage();
+        log.fine("Error in parameters");
+        System.exit(1);
+      }
+    } else if ((remArgs.length < 1) || (remArgs.length > 2) || (outputDirectory != null) || delete) {
       usage();
       log.fine("Error in parameters");
       System.exit(1);
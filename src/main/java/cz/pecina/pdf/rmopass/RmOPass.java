@@ -24,10 +24,12 @@ package cz.pecina.pdf.rmopass;
 
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfWriter;
-import java.io.ByteArrayInputStream;
-import java.io.FileOutputStream;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import cz.pecina.pdf.util.AtomicFileOutputStream;
+import cz.pecina.pdf.util.BatchRunner;
+import cz.pecina.pdf.util.Manifest;
+import cz.pecina.pdf.util.Metrics;
+import java.io.IOException;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -47,6 +49,67 @@ public class RmOPass {
     return "RmOPass";
   }
 
+  /**
+   * Removes the owner password from a PDF file.
+   *
+   * <p>The input file is read on demand and each object is decrypted
+   * and written out as the document is copied, so the memory used does
+   * not grow with the size of the file.  The output is written to
+   * a temporary file that replaces the output file only when complete,
+   * so the output file may be the input file.
+   *
+   * @param inFileName  the input file name
+   * @param outFileName the output file name
+   * @throws IOException on error
+   */
+  public static void removePassword(final String inFileName, final String outFileName) throws IOException {
+    final AtomicFileOutputStream out = new AtomicFileOutputStream(outFileName);
+    try (Metrics.Timer timer = Metrics.start("RmOPass.removePassword");
+        ModifiedPdfReader reader = new ModifiedPdfReader(inFileName)) {
+      Metrics.countFile(Metrics.BYTES_READ, inFileName);
+      reader.resetEncrypted();
+      final PdfDocument outDoc = new PdfDocument(reader, new PdfWriter(out));
+      outDoc.close();
+      out.commit();
+    } finally {
+      out.discard();
+    }
+  }
+
+  /**
+   * Processes files listed in a manifest.
+   *
+   * <p>An invalid entry fails as a job of its own, so that the jobs
+   * already submitted are always allowed to finish.
+   *
+   * @param manifestFileName the manifest file name
+   * @param threads          the number of threads
+   * @return true if all files were processed successfully
+   * @throws Exception on error
+   */
+  private static boolean processBatch(final String manifestFileName, final int threads) throws Exception {
+    final Manifest manifest = new Manifest(manifestFileName);
+    final BatchRunner runner = new BatchRunner(threads);
+    int failed;
+    try {
+      int row = 0;
+      for (Map<String, String> entry : manifest.getEntries()) {
+        row++;
+        final String inFileName = entry.get("input");
+        final String outFileName = entry.getOrDefault("output", inFileName);
+        runner.submit((inFileName == null) ? ("manifest entry " + row) : inFileName, () -> {
+          if (inFileName == null) {
+            throw new IOException("Input file missing in manifest");
+          }
+          runner.process(() -> removePassword(inFileName, outFileName));
+        });
+      }
+    } finally {
+      failed = runner.finish();
+    }
+    return failed == 0;
+  }
+
   /**
    * Main method.
    *
@@ -57,26 +120,36 @@ public class RmOPass {
 
     final Parameters parameters = new Parameters(args);
 
-    byte[] inputData = null;
-    String outFileName = null;
+    if (parameters.getBatchFileName() != null) {
+      try {
+        if (!processBatch(parameters.getBatchFileName(), parameters.getThreads())) {
+          log.fine("Batch processing failed");
+          System.exit(1);
+        }
+      } catch (final Exception exception) {
+        System.err.println("Error processing batch, exception: " + exception);
+        log.fine("Error processing batch, exception: " + exception);
+        System.exit(1);
+      }
+      log.fine("Application terminated normally");
+      return;
+    }
 
-    try {
-      inputData = Files.readAllBytes(Paths.get(parameters.getFileName(0)));
-      outFileName = parameters.getFileName(parameters.numberFileNames() - 1);
-    } catch (final Exception exception) {
-      System.err.println("Error opening files, exception: " + exception);
-      log.fine("Error opening files, exception: " + exception);
-      System.exit(1);
+    if (parameters.getWatchDirectory() != null) {
+      try {
+        new DirectoryWatcher(parameters.getWatchDirectory(), parameters.getOutputDirectory(), parameters.getDelete(),
+            parameters.getStatusInterval(), new BatchRunner(parameters.getThreads())).watch();
+      } catch (final Exception exception) {
+        System.err.println("Error watching directory, exception: " + exception);
+        log.fine("Error watching directory, exception: " + exception);
+        System.exit(1);
+      }
+      log.fine("Application terminated normally");
+      return;
     }
 
     try {
-      final ModifiedPdfReader reader = new ModifiedPdfReader(new ByteArrayInputStream(inputData));
-      reader.resetEncrypted();
-      final PdfWriter writer = new PdfWriter(new FileOutputStream(outFileName));
-      final PdfDocument outDoc = new PdfDocument(reader, writer);
-      outDoc.close();
-      writer.close();
-      reader.close();
+      removePassword(parameters.getFileName(0), parameters.getFileName(parameters.numberFileNames() - 1));
     } catch (final Exception exception) {
       System.err.println("Error processing files, exception: " + exception);
       log.fine("Error processing files, exception: " + exception);
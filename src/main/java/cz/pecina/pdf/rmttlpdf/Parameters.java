@@ -22,7 +22,12 @@
 
 package cz.pecina.pdf.rmttlpdf;
 
+import cz.pecina.pdf.util.Metrics;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -56,6 +61,32 @@ public class Parameters {
         .longOpt("version")
         .desc("show version")
         .build());
+    options.addOption(
+        Option.builder(null)
+        .longOpt("metrics")
+        .hasArg()
+        .argName("FILE")
+        .desc("write metrics to FILE (\"-\" = standard error)")
+        .build());
+    options.addOption(
+        Option.builder("s")
+        .longOpt("set")
+        .hasArg()
+        .argName("KEY=VALUE")
+        .desc("set Info entry (may be repeated)")
+        .build());
+    options.addOption(
+        Option.builder("r")
+        .longOpt("remove")
+        .hasArg()
+        .argName("KEY")
+        .desc("remove Info entry (may be repeated)")
+        .build());
+    options.addOption(
+        Option.builder("n")
+        .longOpt("normalize")
+        .desc("normalize Info entries")
+        .build());
   }
 
   // for description see Object
@@ -70,13 +101,49 @@ public class Parameters {
    */
   public void usage() {
     final HelpFormatter helpFormatter = new HelpFormatter();
-    helpFormatter.printHelp("rmwmark [options] infile [outfile]", options);
+    helpFormatter.printHelp("rmttlpdf [options] infile [outfile]", options);
+    System.out.println("\nNotes:");
+    System.out.println("  - With no options, the Title entry is removed");
+    System.out.println("  - Entries are removed first, then set, then normalized");
+    System.out.println("  - Dates may be set to \"now\"");
+    System.out.println("  - Normalization collapses whitespace in text entries, removes empty ones");
+    System.out.println("    and converts dates to the canonical format");
     System.out.println("\nThe source code is available from <https://github.com/tompecina/pdf>.");
   }
 
   // parsed parameters
+  private final List<String> removals = new ArrayList<>();
+  private final Map<String, String> settings = new LinkedHashMap<>();
+  private boolean normalize;
   private String[] fileNames;
 
+  /**
+   * Gets the keys of entries to be removed.
+   *
+   * @return list of keys
+   */
+  public List<String> getRemovals() {
+    return removals;
+  }
+
+  /**
+   * Gets the entries to be set.
+   *
+   * @return map of keys to values, in the order given
+   */
+  public Map<String, String> getSettings() {
+    return settings;
+  }
+
+  /**
+   * Gets the normalization flag.
+   *
+   * @return true if entries are to be normalized
+   */
+  public boolean getNormalize() {
+    return normalize;
+  }
+
   /**
    * Gets file names.
    *
@@ -141,6 +208,32 @@ public class Parameters {
       System.exit(0);
     }
 
+    if (line.hasOption("metrics")) {
+      Metrics.enable("rmttlpdf", line.getOptionValue("metrics"));
+    }
+
+    if (line.hasOption("s")) {
+      for (String setting : line.getOptionValues("s")) {
+        final int index = setting.indexOf('=');
+        if (index < 1) {
+          System.err.println("Error in setting: " + setting);
+          log.fine("Failed to parse setting");
+          System.exit(1);
+        }
+        settings.put(setting.substring(0, index), setting.substring(index + 1));
+      }
+    }
+
+    if (line.hasOption("r")) {
+      removals.addAll(Arrays.asList(line.getOptionValues("r")));
+    }
+
+    normalize = line.hasOption("n");
+
+    if (removals.isEmpty() && settings.isEmpty() && !normalize) {
+      removals.add("Title");
+    }
+
     final String[] remArgs = line.getArgs();
 
     if ((remArgs.length < 1) || (remArgs.length > 2)) {
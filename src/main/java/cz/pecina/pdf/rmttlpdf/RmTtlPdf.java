@@ -22,19 +22,29 @@
 
 package cz.pecina.pdf.rmttlpdf;
 
+import com.itextpdf.io.font.PdfEncodings;
+import com.itextpdf.kernel.pdf.PdfDate;
 import com.itextpdf.kernel.pdf.PdfDictionary;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfObject;
 import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfString;
 import com.itextpdf.kernel.pdf.PdfWriter;
-import java.io.ByteArrayInputStream;
-import java.io.FileOutputStream;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import com.itextpdf.kernel.pdf.StampingProperties;
+import cz.pecina.pdf.util.IncrementalOutputStream;
+import cz.pecina.pdf.util.Metrics;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
- * Remove title from PDF file.
+ * Edit the Info dictionary of PDF file.
+ *
+ * <p>The edits are applied in a single incremental update, which
+ * contains only the Info dictionary and the trailer, so the time taken
+ * does not depend on the size of the file.
  *
  * @author Tomáš Pecina
  * @version 1.0.0
@@ -50,6 +60,44 @@ public class RmTtlPdf {
     return "RmTtlPdf";
   }
 
+  // checks whether a key is a date key
+  private static boolean isDate(final PdfName key) {
+    return PdfName.CreationDate.equals(key) || PdfName.ModDate.equals(key);
+  }
+
+  /**
+   * Normalizes the Info dictionary.
+   *
+   * <p>Whitespace in text entries is collapsed, empty entries are
+   * removed and dates are converted to the canonical format.
+   *
+   * @param info the Info dictionary
+   */
+  private static void normalize(final PdfDictionary info) {
+    for (PdfName key : new ArrayList<>(info.keySet())) {
+      final PdfObject value = info.get(key);
+      if (!(value instanceof PdfString)) {
+        continue;
+      }
+      final String text = ((PdfString) value).toUnicodeString().trim().replaceAll("\\s+", " ");
+      if (text.isEmpty()) {
+        info.remove(key);
+      } else if (isDate(key)) {
+        Calendar date = null;
+        try {
+          date = PdfDate.decode(text);
+        } catch (final RuntimeException exception) {
+          log.fine("Failed to parse date, exception: " + exception);
+        }
+        if (date != null) {
+          info.put(key, new PdfDate(date).getPdfObject());
+        }
+      } else if (!text.equals(((PdfString) value).toUnicodeString())) {
+        info.put(key, new PdfString(text, PdfEncodings.UNICODE_BIG));
+      }
+    }
+  }
+
   /**
    * Main method.
    *
@@ -60,24 +108,36 @@ public class RmTtlPdf {
 
     final Parameters parameters = new Parameters(args);
 
-    byte[] inputData = null;
-    String outFileName = null;
-
-    try {
-      inputData = Files.readAllBytes(Paths.get(parameters.getFileName(0)));
-      outFileName = parameters.getFileName(parameters.numberFileNames() - 1);
-    } catch (final Exception exception) {
-      System.err.println("Error opening files, exception: " + exception);
-      log.fine("Error opening files, exception: " + exception);
-      System.exit(1);
-    }
+    final String inFileName = parameters.getFileName(0);
+    final String outFileName = parameters.getFileName(parameters.numberFileNames() - 1);
 
     try (
-        PdfReader reader = new PdfReader(new ByteArrayInputStream(inputData));
-        PdfWriter writer = new PdfWriter(new FileOutputStream(outFileName));
-        PdfDocument inDoc = new PdfDocument(reader, writer)) {
+        Metrics.Timer timer = Metrics.start("RmTtlPdf.process");
+        PdfReader reader = new PdfReader(inFileName);
+        IncrementalOutputStream out = new IncrementalOutputStream(reader, inFileName, outFileName)) {
 
-      ((PdfDictionary) inDoc.getTrailer().get(PdfName.Info)).remove(PdfName.Title);
+      Metrics.countFile(Metrics.BYTES_READ, inFileName);
+      try (PdfDocument inDoc = new PdfDocument(reader, new PdfWriter(out), new StampingProperties().useAppendMode())) {
+        final PdfDictionary info = inDoc.getTrailer().getAsDictionary(PdfName.Info);
+        for (String key : parameters.getRemovals()) {
+          info.remove(new PdfName(key));
+        }
+        for (Map.Entry<String, String> setting : parameters.getSettings().entrySet()) {
+          final PdfName key = new PdfName(setting.getKey());
+          if (isDate(key) && setting.getValue().equals("now")) {
+            info.put(key, new PdfDate().getPdfObject());
+          } else {
+            info.put(key, new PdfString(setting.getValue(), PdfEncodings.UNICODE_BIG));
+          }
+        }
+        if (parameters.getNormalize()) {
+          normalize(info);
+        }
+        info.setModified();
+      } catch (final RuntimeException exception) {
+        out.discard();
+        throw exception;
+      }
     } catch (final Exception exception) {
       System.err.println("Error processing files, exception: " + exception);
       log.fine("Error processing files, exception: " + exception);
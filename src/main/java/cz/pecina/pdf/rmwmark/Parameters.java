@@ -22,6 +22,7 @@
 
 package cz.pecina.pdf.rmwmark;
 
+import cz.pecina.pdf.util.Metrics;
 import java.util.Arrays;
 import java.util.logging.Logger;
 import org.apache.commons.cli.CommandLine;
@@ -56,6 +57,13 @@ public class Parameters {
         .longOpt("version")
         .desc("show version")
         .build());
+    options.addOption(
+        Option.builder(null)
+        .longOpt("metrics")
+        .hasArg()
+        .argName("FILE")
+        .desc("write metrics to FILE (\"-\" = standard error)")
+        .build());
   }
 
   // for description see Object
@@ -141,6 +149,10 @@ public class Parameters {
       System.exit(0);
     }
 
+    if (line.hasOption("metrics")) {
+      Metrics.enable("rmwmark", line.getOptionValue("metrics"));
+    }
+
     final String[] remArgs = line.getArgs();
 
     if ((remArgs.length < 1) || (remArgs.length > 2)) {
@@ -24,25 +24,33 @@ package cz.pecina.pdf.rmwmark;
 
 import com.itextpdf.kernel.geom.Matrix;
 import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfIndirectReference;
+import com.itextpdf.kernel.pdf.PdfName;
 import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.PdfStream;
 import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
 import com.itextpdf.kernel.pdf.canvas.parser.EventType;
 import com.itextpdf.kernel.pdf.canvas.parser.PdfDocumentContentParser;
 import com.itextpdf.kernel.pdf.canvas.parser.data.IEventData;
 import com.itextpdf.kernel.pdf.canvas.parser.data.ImageRenderInfo;
 import com.itextpdf.kernel.pdf.canvas.parser.listener.IEventListener;
 import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
-import com.itextpdf.layout.Document;
-import com.itextpdf.layout.element.AreaBreak;
-import com.itextpdf.layout.element.Image;
-import com.itextpdf.layout.property.AreaBreakType;
 import cz.pecina.pdf.rmopass.ModifiedPdfReader;
+import cz.pecina.pdf.util.Metrics;
 import java.io.ByteArrayInputStream;
 import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.logging.Logger;
 
 /**
@@ -62,42 +70,68 @@ public class RmWmark {
     return "RmWmark";
   }
 
-  // set small value to zero
-  private static float norm(final float arg) {
-    return ((arg > -1f) && (arg < 1f)) ? 0f : arg;
-  }
-
   // event listener
   private static class Listener implements IEventListener {
 
-    private Document doc;
     private PdfDocument outDoc;
-    private boolean firstPage = true;
+    private PdfCanvas canvas;
+    private MessageDigest digest;
 
-    Listener(final Document doc) {
-      this.doc = doc;
-      this.outDoc = doc.getPdfDocument();
+    // images already copied to the output document, keyed by the source
+    // indirect reference and, as a fallback, by a digest of their contents
+    private Map<PdfIndirectReference, PdfImageXObject> imagesByReference = new HashMap<>();
+    private Map<ByteBuffer, PdfImageXObject> imagesByDigest = new HashMap<>();
+
+    Listener(final PdfDocument outDoc) throws NoSuchAlgorithmException {
+      this.outDoc = outDoc;
+      this.digest = MessageDigest.getInstance("SHA-256");
+    }
+
+    // sets the canvas of the page being processed
+    void setCanvas(final PdfCanvas canvas) {
+      this.canvas = canvas;
+    }
+
+    // computes digest of the raw image stream and its dictionary
+    private ByteBuffer digestImage(final PdfStream stream) {
+      final Map<String, String> entries = new TreeMap<>();
+      for (PdfName key : stream.keySet()) {
+        if (!PdfName.Length.equals(key)) {
+          entries.put(key.getValue(), stream.get(key, false).toString());
+        }
+      }
+      digest.update(entries.toString().getBytes(StandardCharsets.UTF_8));
+      return ByteBuffer.wrap(digest.digest(stream.getBytes(false)));
+    }
+
+    // copies image to the output document unless it has been copied already
+    private PdfImageXObject copyImage(final PdfImageXObject image) {
+      final PdfStream stream = image.getPdfObject();
+      final PdfIndirectReference reference = stream.getIndirectReference();
+      PdfImageXObject copy = (reference == null) ? null : imagesByReference.get(reference);
+      if (copy == null) {
+        final ByteBuffer key = digestImage(stream);
+        copy = imagesByDigest.get(key);
+        if (copy == null) {
+          copy = image.copyTo(outDoc);
+          imagesByDigest.put(key, copy);
+        }
+        if (reference != null) {
+          imagesByReference.put(reference, copy);
+        }
+      }
+      return copy;
     }
 
     public void eventOccurred(final IEventData data, final EventType type) {
       final ImageRenderInfo renderInfo = (ImageRenderInfo) data;
       final Matrix ctm = renderInfo.getImageCtm();
-      final PdfImageXObject imageXObject = renderInfo.getImage().copyTo(outDoc);
-      final float i11 = norm(ctm.get(Matrix.I11));
-      final float i12 = norm(ctm.get(Matrix.I12));
-      final float i21 = norm(ctm.get(Matrix.I21));
-      final float i22 = norm(ctm.get(Matrix.I22));
-      final float width = Math.max(Math.abs(i11), Math.abs(i12));
-      final float height = Math.max(Math.abs(i21), Math.abs(i22));
-      final Image image = new Image(imageXObject, 0, 0);
-      image.setRotationAngle(Math.atan2(Math.signum(i12), Math.signum(i11)));
-      image.setPadding(0);
-      image.scaleAbsolute(width, height);
-      if (!firstPage) {
-        doc.add(new AreaBreak(AreaBreakType.NEXT_PAGE));
-      }
-      firstPage = false;
-      doc.add(image);
+      final PdfImageXObject imageXObject = copyImage(renderInfo.getImage());
+      canvas.addXObject(
+          imageXObject,
+          ctm.get(Matrix.I11), ctm.get(Matrix.I12),
+          ctm.get(Matrix.I21), ctm.get(Matrix.I22),
+          ctm.get(Matrix.I31), ctm.get(Matrix.I32));
     }
 
     public Set<EventType> getSupportedEvents() {
@@ -118,16 +152,17 @@ public class RmWmark {
     byte[] inputData = null;
     String outFileName = null;
 
-    try {
+    try (Metrics.Timer timer = Metrics.start("RmWmark.read")) {
       inputData = Files.readAllBytes(Paths.get(parameters.getFileName(0)));
       outFileName = parameters.getFileName(parameters.numberFileNames() - 1);
+      Metrics.count(Metrics.BYTES_READ, inputData.length);
     } catch (final Exception exception) {
       System.err.println("Error opening files, exception: " + exception);
       log.fine("Error opening files, exception: " + exception);
       System.exit(1);
     }
 
-    try {
+    try (Metrics.Timer timer = Metrics.start("RmWmark.process")) {
       final ModifiedPdfReader reader = new ModifiedPdfReader(new ByteArrayInputStream(inputData));
       reader.resetEncrypted();
       final PdfDocument inDoc = new PdfDocument(reader);
@@ -135,20 +170,26 @@ public class RmWmark {
       final PdfDocumentContentParser parser = new PdfDocumentContentParser(inDoc);
       final PdfWriter writer = new PdfWriter(new FileOutputStream(outFileName));
       final PdfDocument outDoc = new PdfDocument(writer);
-      final Document doc = new Document(outDoc);
-      final IEventListener listener = new Listener(doc);
+      final Listener listener = new Listener(outDoc);
 
       for (int pageNumber = 1; pageNumber <= numberPages; pageNumber++) {
         final PdfPage inPage = inDoc.getPage(pageNumber);
-        outDoc.addNewPage();
-        final PdfPage outPage = outDoc.getPage(pageNumber);
+        final PdfPage outPage = outDoc.addNewPage();
         outPage.setMediaBox(inPage.getMediaBox());
         outPage.setRotation(inPage.getRotation());
-        parser.processContent(pageNumber, listener);
+        final PdfCanvas canvas = new PdfCanvas(outPage);
+        listener.setCanvas(canvas);
+        try (Metrics.Timer pageTimer = Metrics.start("RmWmark.page")) {
+          parser.processContent(pageNumber, listener);
+        }
+        canvas.release();
+      }
+      try (Metrics.Timer writeTimer = Metrics.start("RmWmark.write")) {
+        outDoc.close();
+        writer.close();
       }
-      doc.close();
-      writer.close();
       reader.close();
+      Metrics.countFile(Metrics.BYTES_WRITTEN, outFileName);
     } catch (final Exception exception) {
       System.err.println("Error processing files, exception: " + exception);
       log.fine("Error processing files, exception: " + exception);
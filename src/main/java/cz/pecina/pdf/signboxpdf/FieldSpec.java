@@ -0,0 +1,186 @@
+/* FieldSpec.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+package cz.pecina.pdf.signboxpdf;
+
+import cz.pecina.pdf.util.Manifest;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Specification of a signature field.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class FieldSpec {
+
+  // static logger
+  private static final Logger log = Logger.getLogger(FieldSpec.class.getName());
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "FieldSpec";
+  }
+
+  // field parameters
+  private final int page;
+  private final float xOffset;
+  private final float yOffset;
+  private final float width;
+  private final float height;
+  private final String name;
+
+  /**
+   * Creates the specification.
+   *
+   * @param page   the page number
+   * @param x      the x offset, negative from the right page margin
+   * @param y      the y offset, negative from the top page margin
+   * @param width  the field width
+   * @param height the field height
+   * @param name   the field name
+   */
+  public FieldSpec(
+      final int page,
+      final float x,
+      final float y,
+      final float width,
+      final float height,
+      final String name) {
+    this.page = page;
+    xOffset = x;
+    yOffset = y;
+    this.width = width;
+    this.height = height;
+    this.name = name;
+  }
+
+  /**
+   * Gets the page number.
+   *
+   * @return page number
+   */
+  public int getPage() {
+    return page;
+  }
+
+  /**
+   * Gets the x offset.
+   *
+   * @return x offset
+   */
+  public float getXOffset() {
+    return xOffset;
+  }
+
+  /**
+   * Gets the y offset.
+   *
+   * @return y offset
+   */
+  public float getYOffset() {
+    return yOffset;
+  }
+
+  /**
+   * Gets the field width.
+   *
+   * @return field width
+   */
+  public float getWidth() {
+    return width;
+  }
+
+  /**
+   * Gets the field height.
+   *
+   * @return field height
+   */
+  public float getHeight() {
+    return height;
+  }
+
+  /**
+   * Gets the field name.
+   *
+   * @return field name
+   */
+  public String getName() {
+    return name;
+  }
+
+  // gets a numeric value from a manifest entry
+  private static float getValue(final Map<String, String> entry, final String key, final Float defaultValue)
+      throws IOException {
+    final String value = entry.get(key);
+    if (value == null) {
+      if (defaultValue == null) {
+        throw new IOException("Field specification lacks " + key);
+      }
+      return defaultValue;
+    }
+    try {
+      return Float.parseFloat(value);
+    } catch (final NumberFormatException exception) {
+      throw new IOException("Error in " + key + " of field specification: " + value);
+    }
+  }
+
+  /**
+   * Reads field specifications from a file.
+   *
+   * <p>The file is a CSV file with a header or a JSONL file, with the
+   * fields page, x, y, width, height and name.  The coordinates and the
+   * name are required, the other fields default to the values given.
+   *
+   * @param fileName      the file name
+   * @param defaultPage   the default page number
+   * @param defaultWidth  the default field width
+   * @param defaultHeight the default field height
+   * @return the list of specifications
+   * @throws IOException on error
+   */
+  public static List<FieldSpec> read(
+      final String fileName,
+      final int defaultPage,
+      final float defaultWidth,
+      final float defaultHeight) throws IOException {
+    final List<FieldSpec> specs = new ArrayList<>();
+    for (Map<String, String> entry : new Manifest(fileName).getEntries()) {
+      final int page = (int) getValue(entry, "page", (float) defaultPage);
+      final float width = getValue(entry, "width", defaultWidth);
+      final float height = getValue(entry, "height", defaultHeight);
+      final String name = entry.get("name");
+      if ((page <= 0) || (width <= 0) || (height <= 0) || (name == null)) {
+        throw new IOException("Invalid field specification: " + entry);
+      }
+      specs.add(new FieldSpec(page, getValue(entry, "x", null), getValue(entry, "y", null), width, height, name));
+    }
+    log.fine("Field specifications read: " + specs.size());
+    return specs;
+  }
+}
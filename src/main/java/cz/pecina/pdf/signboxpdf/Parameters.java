@@ -22,6 +22,7 @@
 
 package cz.pecina.pdf.signboxpdf;
 
+import cz.pecina.pdf.util.Metrics;
 import java.util.Arrays;
 import java.util.logging.Logger;
 import org.apache.commons.cli.CommandLine;
@@ -56,6 +57,13 @@ public class Parameters {
         .longOpt("version")
         .desc("show version")
         .build());
+    options.addOption(
+        Option.builder(null)
+        .longOpt("metrics")
+        .hasArg()
+        .argName("FILE")
+        .desc("write metrics to FILE (\"-\" = standard error)")
+        .build());
     options.addOption(
         Option.builder("p")
         .longOpt("page")
@@ -87,6 +95,28 @@ public class Parameters {
         .argName("HEIGHT")
         .desc("signature field height (default: 36)")
         .build());
+    options.addOption(
+        Option.builder("F")
+        .longOpt("fields")
+        .hasArg()
+        .argName("FILE")
+        .desc("read field specifications from file")
+        .build());
+    options.addOption(
+        Option.builder("b")
+        .longOpt("batch")
+        .hasArg()
+        .argName("MANIFEST")
+        .desc("process files listed in manifest")
+        .build());
+    options.addOption(
+        Option.builder("j")
+        .longOpt("threads")
+        .hasArg()
+        .type(Number.class)
+        .argName("THREADS")
+        .desc("number of documents processed at a time (default: number of processors)")
+        .build());
   }
 
   // for description see Object
@@ -101,9 +131,15 @@ public class Parameters {
    */
   public void usage() {
     final HelpFormatter helpFormatter = new HelpFormatter();
-    helpFormatter.printHelp("signboxpdf [options] x y infile [outfile]", options);
+    helpFormatter.printHelp("signboxpdf [options] x y infile [outfile]\n"
+        + "       signboxpdf [options] -F fieldfile infile [outfile]\n"
+        + "       signboxpdf [options] -b manifest", options);
     System.out.println("\nNotes:");
     System.out.println("  - Negative values of x/y mean offset from the right/top page margin");
+    System.out.println("  - Field file is a CSV file with a header or a JSONL file, with the fields page, x, y,");
+    System.out.println("    width, height and name; x, y and name are required, the rest default to the options");
+    System.out.println("  - Manifest is a CSV file with a header or a JSONL file, with the fields input, output");
+    System.out.println("    (default: input file) and fields (default: the -F file)");
     System.out.println("\nThe source code is available from <https://github.com/tompecina/pdf>.");
   }
 
@@ -118,8 +154,38 @@ public class Parameters {
   private float height = DEFAULT_HEIGHT;
   private int page = 1;
   private String signatureFieldName = "Signature";
+  private String fieldFileName;
+  private String batchFileName;
+  private int threads = Runtime.getRuntime().availableProcessors();
   private String[] fileNames;
 
+  /**
+   * Gets the field specification file name.
+   *
+   * @return the file name, or null if not given
+   */
+  public String getFieldFileName() {
+    return fieldFileName;
+  }
+
+  /**
+   * Gets the manifest file name.
+   *
+   * @return the manifest file name, or null if not in batch mode
+   */
+  public String getBatchFileName() {
+    return batchFileName;
+  }
+
+  /**
+   * Gets the number of threads.
+   *
+   * @return the number of threads
+   */
+  public int getThreads() {
+    return threads;
+  }
+
   /**
    * Gets the x offset.
    *
@@ -238,6 +304,10 @@ public class Parameters {
       System.exit(0);
     }
 
+    if (line.hasOption("metrics")) {
+      Metrics.enable("signboxpdf", line.getOptionValue("metrics"));
+    }
+
     if (line.hasOption("f")) {
       signatureFieldName = line.getOptionValue("f");
     }
@@ -287,18 +357,57 @@ public class Parameters {
       }
     }
 
+    if (line.hasOption("j")) {
+      try {
+        threads = ((Number) line.getParsedOptionValue("j")).intValue();
+      } catch (final Exception exception) {
+        System.err.println("Error in number of threads, exception: " + exception);
+        log.fine("Failed to parse number of threads, exception: " + exception);
+        System.exit(1);
+      }
+      if (threads < 1) {
+        System.err.println("Number of threads must be positive");
+        log.fine("Number of threads out of range");
+        System.exit(1);
+      }
+    }
+
+    fieldFileName = line.getOptionValue("F");
+    batchFileName = line.getOptionValue("b");
+
     final String[] remArgs = line.getArgs();
 
-    if ((remArgs.length < 3) || (remArgs.length > 4)) {
-      usage();
-      log.fine("Error in parameters");
-      System.exit(1);
+    if (batchFileName != null) {
+      if (remArgs.length > 0) {
+        usage();
+        log.fine("Error in parameters");
+        System.exit(1);
+      }
+      fileNames = remArgs;
+    } else if (fieldFileName != null) {
+      if ((remArgs.length < 1) || (remArgs.length > 2)) {
+        usage();
+        log.fine("Error in parameters");
+        System.exit(1);
+      }
+      fileNames = Arrays.copyOfRange(remArgs, 0, remArgs.length);
+    } else {
+      if ((remArgs.length < 3) || (remArgs.length > 4)) {
+        usage();
+        log.fine("Error in parameters");
+        System.exit(1);
+      }
+      try {
+        xOffset = Float.valueOf(remArgs[0]);
+        yOffset = Float.valueOf(remArgs[1]);
+      } catch (final Exception exception) {
+        System.err.println("Error in coordinates, exception: " + exception);
+        log.fine("Failed to parse coordinates, exception: " + exception);
+        System.exit(1);
+      }
+      fileNames = Arrays.copyOfRange(remArgs, 2, remArgs.length);
     }
 
-    xOffset = Float.valueOf(remArgs[0]);
-    yOffset = Float.valueOf(remArgs[1]);
-    fileNames = Arrays.copyOfRange(remArgs, 2, remArgs.length);
-
     log.fine("Parameters set up");
   }
 }
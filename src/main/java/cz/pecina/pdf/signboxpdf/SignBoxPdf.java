@@ -22,18 +22,31 @@
 
 package cz.pecina.pdf.signboxpdf;
 
+import com.itextpdf.forms.PdfAcroForm;
 import com.itextpdf.forms.fields.PdfFormField;
 import com.itextpdf.kernel.colors.DeviceRgb;
 import com.itextpdf.kernel.geom.Rectangle;
 import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfPage;
 import com.itextpdf.kernel.pdf.PdfReader;
 import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.StampingProperties;
 import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
 import com.itextpdf.kernel.pdf.extgstate.PdfExtGState;
-import java.io.ByteArrayInputStream;
-import java.io.FileOutputStream;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+import cz.pecina.pdf.util.BatchRunner;
+import cz.pecina.pdf.util.IncrementalOutputStream;
+import cz.pecina.pdf.util.Manifest;
+import cz.pecina.pdf.util.Metrics;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 /**
@@ -56,6 +69,152 @@ public class SignBoxPdf {
   // background color
   private static final DeviceRgb BG_COLOR = new DeviceRgb(.9f, .92f, 1f);
 
+  /**
+   * Creates the background of a field.
+   *
+   * <p>The background is a form XObject, shared by all fields of the
+   * same size in the document.
+   *
+   * @param pdfDocument the document
+   * @param extGState   the graphics state, shared by all backgrounds
+   * @param width       the width of the field
+   * @param height      the height of the field
+   * @return the background
+   */
+  private static PdfFormXObject createBackground(
+      final PdfDocument pdfDocument,
+      final PdfExtGState extGState,
+      final float width,
+      final float height) {
+    final PdfFormXObject background = new PdfFormXObject(new Rectangle(width, height));
+    final PdfCanvas canvas = new PdfCanvas(background, pdfDocument);
+    canvas.setExtGState(extGState);
+    canvas.rectangle(0, 0, width, height);
+    canvas.setFillColor(BG_COLOR);
+    canvas.fill();
+    canvas.release();
+    return background;
+  }
+
+  /**
+   * Adds signature fields to a document.
+   *
+   * <p>All specifications are checked against the document before any
+   * field is added.  The backgrounds of the fields are drawn in one
+   * content stream per page.  The document is left open.
+   *
+   * @param pdfDocument the document
+   * @param specs       the field specifications
+   * @throws IOException if a page is not found or a field already exists
+   */
+  public static void addFields(final PdfDocument pdfDocument, final List<FieldSpec> specs) throws IOException {
+    final PdfAcroForm acroForm = PdfAcroForm.getAcroForm(pdfDocument, true);
+    final Set<String> names = new HashSet<>();
+    for (FieldSpec spec : specs) {
+      if (spec.getPage() > pdfDocument.getNumberOfPages()) {
+        throw new IOException("Page " + spec.getPage() + " not found");
+      }
+      if ((acroForm.getField(spec.getName()) != null) || !names.add(spec.getName())) {
+        throw new IOException("Field '" + spec.getName() + "' already exists");
+      }
+    }
+    final PdfExtGState extGState = new PdfExtGState();
+    extGState.setBlendMode(PdfExtGState.BM_MULTIPLY);
+    extGState.makeIndirect(pdfDocument);
+    final Map<String, PdfFormXObject> backgrounds = new HashMap<>();
+    final Map<Integer, PdfCanvas> canvases = new HashMap<>();
+    for (FieldSpec spec : specs) {
+      final PdfPage page = pdfDocument.getPage(spec.getPage());
+      final Rectangle box = page.getCropBox();
+      final float x = (spec.getXOffset() < 0)
+          ? (box.getRight() + spec.getXOffset() - spec.getWidth()) : (box.getLeft() + spec.getXOffset());
+      final float y = (spec.getYOffset() < 0)
+          ? (box.getTop() + spec.getYOffset() - spec.getHeight()) : (box.getBottom() + spec.getYOffset());
+      final Rectangle rect = new Rectangle(x, y, spec.getWidth(), spec.getHeight());
+      final PdfFormField field = PdfFormField.createSignature(pdfDocument, rect);
+      field.setFieldName(spec.getName());
+      acroForm.addField(field, page);
+      final PdfFormXObject background = backgrounds.computeIfAbsent(spec.getWidth() + "x" + spec.getHeight(),
+          key -> createBackground(pdfDocument, extGState, spec.getWidth(), spec.getHeight()));
+      canvases.computeIfAbsent(spec.getPage(), key -> new PdfCanvas(page)).addXObject(background, x, y);
+    }
+    for (PdfCanvas canvas : canvases.values()) {
+      canvas.release();
+    }
+    acroForm.setModified();
+    acroForm.getPdfObject().getAsArray(PdfName.Fields).setModified();
+  }
+
+  /**
+   * Adds signature fields to a PDF file.
+   *
+   * <p>All fields are added in a single incremental update, which is
+   * abandoned if any specification does not match the document.
+   *
+   * @param inFileName  the input file name
+   * @param outFileName the output file name
+   * @param specs       the field specifications
+   * @throws IOException on error
+   */
+  public static void addFields(final String inFileName, final String outFileName, final List<FieldSpec> specs)
+      throws IOException {
+    try (Metrics.Timer timer = Metrics.start("SignBoxPdf.addFields");
+        PdfReader reader = new PdfReader(inFileName);
+        IncrementalOutputStream out = new IncrementalOutputStream(reader, inFileName, outFileName);
+        PdfDocument pdfDocument = new PdfDocument(reader, new PdfWriter(out), new StampingProperties().useAppendMode())) {
+      Metrics.countFile(Metrics.BYTES_READ, inFileName);
+      try {
+        addFields(pdfDocument, specs);
+      } catch (final IOException | RuntimeException exception) {
+        out.discard();
+        throw exception;
+      }
+    }
+  }
+
+  /**
+   * Processes files listed in a manifest.
+   *
+   * <p>An invalid entry, or a field file that cannot be read, fails as
+   * a job of its own, so that the jobs already submitted, which may be
+   * updating their files in place, are always allowed to finish.  Each
+   * field file is read once and shared by the jobs using it.
+   *
+   * @param parameters the parameters
+   * @return true if all files were processed successfully
+   * @throws Exception on error
+   */
+  private static boolean processBatch(final Parameters parameters) throws Exception {
+    final Manifest manifest = new Manifest(parameters.getBatchFileName());
+    final Map<String, List<FieldSpec>> specsByFileName = new ConcurrentHashMap<>();
+    final BatchRunner runner = new BatchRunner(parameters.getThreads());
+    int failed;
+    try {
+      int row = 0;
+      for (Map<String, String> entry : manifest.getEntries()) {
+        row++;
+        final String inFileName = entry.get("input");
+        final String fieldFileName = entry.getOrDefault("fields", parameters.getFieldFileName());
+        final String outFileName = entry.getOrDefault("output", inFileName);
+        runner.submit((inFileName == null) ? ("manifest entry " + row) : inFileName, () -> {
+          if ((inFileName == null) || (fieldFileName == null)) {
+            throw new IOException("Input file or field file missing in manifest");
+          }
+          List<FieldSpec> specs = specsByFileName.get(fieldFileName);
+          if (specs == null) {
+            specs = FieldSpec.read(fieldFileName, parameters.getPage(), parameters.getWidth(), parameters.getHeight());
+            specsByFileName.putIfAbsent(fieldFileName, specs);
+          }
+          final List<FieldSpec> jobSpecs = specs;
+          runner.process(() -> addFields(inFileName, outFileName, jobSpecs));
+        });
+      }
+    } finally {
+      failed = runner.finish();
+    }
+    return failed == 0;
+  }
+
   /**
    * Main method.
    *
@@ -66,43 +225,29 @@ public class SignBoxPdf {
 
     final Parameters parameters = new Parameters(args);
 
-    final float xOffset = parameters.getXOffset();
-    final float yOffset = parameters.getYOffset();
-    final float width = parameters.getWidth();
-    final float height = parameters.getHeight();
-    final int page = parameters.getPage();
-    final String signatureFieldName = parameters.getSignatureFieldName();
-    byte[] inputData = null;
-    String outFileName = null;
-
-    try {
-      inputData = Files.readAllBytes(Paths.get(parameters.getFileName(0)));
-      outFileName = parameters.getFileName(parameters.numberFileNames() - 1);
-    } catch (final Exception exception) {
-      System.err.println("Error opening files, exception: " + exception);
-      log.fine("Error opening files, exception: " + exception);
-      System.exit(1);
+    if (parameters.getBatchFileName() != null) {
+      try {
+        if (!processBatch(parameters)) {
+          log.fine("Batch processing failed");
+          System.exit(1);
+        }
+      } catch (final Exception exception) {
+        System.err.println("Error processing batch, exception: " + exception);
+        log.fine("Error processing batch, exception: " + exception);
+        System.exit(1);
+      }
+      log.fine("Application terminated normally");
+      return;
     }
 
     try {
-      final PdfReader reader = new PdfReader(new ByteArrayInputStream(inputData));
-      final PdfWriter writer = new PdfWriter(new FileOutputStream(outFileName));
-      final PdfDocument pdfDocument = new PdfDocument(reader, writer);
-      final Rectangle rect = new Rectangle(xOffset, yOffset, xOffset + width, yOffset + height);
-      final PdfFormField field = PdfFormField.createSignature(pdfDocument, rect);
-      field.setFieldName(signatureFieldName);
-      field.setPage(page);
-      final PdfCanvas canvas = new PdfCanvas(pdfDocument.getPage(page));
-      final PdfExtGState extGState = new PdfExtGState();
-      extGState.setBlendMode(PdfExtGState.BM_MULTIPLY);
-      canvas.setExtGState(extGState);
-      canvas.rectangle(rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight());
-      canvas.setFillColor(BG_COLOR);
-      canvas.fill();
-      canvas.release();
-      pdfDocument.close();
-      writer.close();
-      reader.close();
+      final List<FieldSpec> specs = (parameters.getFieldFileName() == null)
+          ? Collections.singletonList(new FieldSpec(parameters.getPage(), parameters.getXOffset(),
+              parameters.getYOffset(), parameters.getWidth(), parameters.getHeight(),
+              parameters.getSignatureFieldName()))
+          : FieldSpec.read(
+              parameters.getFieldFileName(), parameters.getPage(), parameters.getWidth(), parameters.getHeight());
+      addFields(parameters.getFileName(0), parameters.getFileName(parameters.numberFileNames() - 1), specs);
     } catch (final Exception exception) {
       System.err.println("Error processing files, exception: " + exception);
       log.fine("Error processing files, exception: " + exception);
@@ -24,6 +24,11 @@ package cz.pecina.pdf.signpdf;
 
 import com.itextpdf.kernel.colors.Color;
 import com.itextpdf.kernel.colors.DeviceRgb;
+import cz.pecina.pdf.util.Metrics;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
 import java.util.logging.Logger;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -76,6 +81,20 @@ public class Parameters {
         .longOpt("version")
         .desc("show version")
         .build());
+    options.addOption(
+        Option.builder(null)
+        .longOpt("metrics")
+        .hasArg()
+        .argName("FILE")
+        .desc("write metrics to FILE (\"-\" = standard error)")
+        .build());
+    options.addOption(
+        Option.builder(null)
+        .longOpt("sign-date")
+        .hasArg()
+        .argName("TIME")
+        .desc("time of signing, e.g. 2019-01-01T00:00:00Z (default: current time)")
+        .build());
     options.addOption(
         Option.builder("k")
         .longOpt("key")
@@ -138,6 +157,21 @@ public class Parameters {
         .argName("ALIAS")
         .desc("alias in keystore (in none, first alias is used)")
         .build());
+    options.addOption(
+        Option.builder("b")
+        .longOpt("batch")
+        .hasArg()
+        .argName("MANIFEST")
+        .desc("process files listed in manifest")
+        .build());
+    options.addOption(
+        Option.builder("j")
+        .longOpt("threads")
+        .hasArg()
+        .type(Number.class)
+        .argName("THREADS")
+        .desc("number of documents signed at a time (default: number of processors)")
+        .build());
     options.addOption(
         Option.builder(null)
         .longOpt("image-file")
@@ -244,8 +278,11 @@ public class Parameters {
    */
   public void usage() {
     final HelpFormatter helpFormatter = new HelpFormatter();
-    helpFormatter.printHelp("signpdf [options] infile [outfile]", options);
+    helpFormatter.printHelp("signpdf [options] infile [outfile]\n"
+        + "       signpdf [options] -b manifest", options);
     System.out.print("\nNegative POS values are applied in the opposite direction.");
+    System.out.print("\nManifest is a CSV file with a header or a JSONL file, with the fields input and output");
+    System.out.print("\n(default: input file).");
     System.out.println("\nThe source code is available from <https://github.com/tompecina/pdf>.");
   }
 
@@ -277,6 +314,9 @@ public class Parameters {
   private float textY = DEFAULT_TEXT_Y;
   private boolean textXDir = DEFAULT_TEXT_X_DIR;
   private boolean textYDir = DEFAULT_TEXT_Y_DIR;
+  private String batchFileName;
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private Calendar signDate = null;
   private String[] fileNames;
 
   /**
@@ -360,6 +400,33 @@ public class Parameters {
     return fileNames;
   }
 
+  /**
+   * Gets the manifest file name.
+   *
+   * @return the manifest file name, or null if not in batch mode
+   */
+  public String getBatchFileName() {
+    return batchFileName;
+  }
+
+  /**
+   * Gets the number of documents signed at a time.
+   *
+   * @return the number of documents
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Gets the time of signing.
+   *
+   * @return the time of signing, or null if the current time is to be used
+   */
+  public Calendar getSignDate() {
+    return signDate;
+  }
+
   /**
    * Gets alias.
    *
@@ -759,9 +826,40 @@ public class Parameters {
       System.exit(0);
     }
 
+    if (line.hasOption("metrics")) {
+      Metrics.enable("signpdf", line.getOptionValue("metrics"));
+    }
+
+    if (line.hasOption("j")) {
+      try {
+        threads = ((Number) line.getParsedOptionValue("j")).intValue();
+      } catch (final Exception exception) {
+        System.err.println("Error in number of threads, exception: " + exception);
+        log.fine("Failed to parse number of threads, exception: " + exception);
+        System.exit(1);
+      }
+      if (threads < 1) {
+        System.err.println("Number of threads must be positive");
+        log.fine("Number of threads out of range");
+        System.exit(1);
+      }
+    }
+
+    if (line.hasOption("sign-date")) {
+      try {
+        signDate = GregorianCalendar.from(Instant.parse(line.getOptionValue("sign-date")).atZone(ZoneId.systemDefault()));
+      } catch (final Exception exception) {
+        System.err.println("Error in time of signing, exception: " + exception);
+        log.fine("Failed to parse time of signing, exception: " + exception);
+        System.exit(1);
+      }
+    }
+
+    batchFileName = line.getOptionValue("b");
+
     fileNames = line.getArgs();
 
-    if ((fileNames.length < 1) || (fileNames.length > 2)) {
+    if ((batchFileName != null) ? (fileNames.length > 0) : ((fileNames.length < 1) || (fileNames.length > 2))) {
       usage();
       log.fine("Error in parameters");
       System.exit(1);
@@ -42,19 +42,28 @@ import com.itextpdf.signatures.PdfSigner;
 import com.itextpdf.signatures.PrivateKeySignature;
 import com.itextpdf.signatures.SignatureUtil;
 import com.itextpdf.svg.converter.SvgConverter;
+import cz.pecina.pdf.util.AtomicFileOutputStream;
+import cz.pecina.pdf.util.BatchRunner;
+import cz.pecina.pdf.util.Manifest;
+import cz.pecina.pdf.util.Metrics;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
 import java.security.KeyStore;
+import java.security.KeyStoreException;
 import java.security.PrivateKey;
 import java.security.Security;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.Calendar;
+import java.util.Map;
 import java.util.logging.Logger;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
@@ -114,8 +123,11 @@ public class SignPdf {
       svg = imageFilename.toLowerCase().endsWith(".svg");
       imageStream = new FileInputStream(imageFilename);
     }
-    final Image image = (svg ? SvgConverter.convertToImage(imageStream, doc)
-        : new Image(ImageDataFactory.create(imageStream.readAllBytes())));
+    final Image image;
+    try (Metrics.Timer timer = Metrics.start(svg ? "SignPdf.svg" : "SignPdf.image")) {
+      image = (svg ? SvgConverter.convertToImage(imageStream, doc)
+          : new Image(ImageDataFactory.create(imageStream.readAllBytes())));
+    }
     final float imageOrigWidth = image.getImageWidth();
     final float imageOrigHeight = image.getImageHeight();
     float imageWidth = par.getImageWidth();
@@ -163,8 +175,12 @@ public class SignPdf {
     }
     textX += fieldLeft;
     textY += fieldBottom;
-    final PdfFont brm = PdfFontFactory.createFont(par.getRegularFontFilename(), PdfEncodings.IDENTITY_H, true);
-    final PdfFont bbf = PdfFontFactory.createFont(par.getBoldFontFilename(), PdfEncodings.IDENTITY_H, true);
+    final PdfFont brm;
+    final PdfFont bbf;
+    try (Metrics.Timer timer = Metrics.start("SignPdf.font")) {
+      brm = PdfFontFactory.createFont(par.getRegularFontFilename(), PdfEncodings.IDENTITY_H, true);
+      bbf = PdfFontFactory.createFont(par.getBoldFontFilename(), PdfEncodings.IDENTITY_H, true);
+    }
     final float fontSize = par.getFontSize();
     final float leading = par.getLeading();
     canvas2.setFillColor(par.getFontColor());
@@ -190,6 +206,169 @@ public class SignPdf {
     canvas2.release();
   }
 
+  // parameters
+  private final Parameters par;
+
+  // signing credentials
+  private final BouncyCastleProvider provider;
+  private final PrivateKey key;
+  private final Certificate[] chain;
+
+  /**
+   * Creates a signer, loading the key from the key store.
+   *
+   * @param par the parameters
+   * @throws IOException              if the key store cannot be read
+   * @throws GeneralSecurityException if the key cannot be loaded
+   */
+  public SignPdf(final Parameters par) throws IOException, GeneralSecurityException {
+    this.par = par;
+    try (Metrics.Timer timer = Metrics.start("SignPdf.keyStore");
+        InputStream keyStream = new FileInputStream(par.getKeyFileName())) {
+      provider = new BouncyCastleProvider();
+      Security.addProvider(provider);
+      final KeyStore keyStore = KeyStore.getInstance("pkcs12");
+      keyStore.load(keyStream, par.getPassword());
+      String alias = par.getAlias();
+      if (alias != null) {
+        if (!keyStore.containsAlias(alias)) {
+          throw new KeyStoreException("Alias not found");
+        }
+      } else {
+        alias = keyStore.aliases().nextElement();
+      }
+      key = (PrivateKey) keyStore.getKey(alias, par.getPassword());
+      chain = keyStore.getCertificateChain(alias);
+    }
+  }
+
+  // creates the stamping properties
+  private StampingProperties createProperties() {
+    final StampingProperties prop = new StampingProperties().preserveEncryption();
+    if (par.getSignatureAppend()) {
+      prop.useAppendMode();
+    }
+    return prop;
+  }
+
+  /**
+   * Signs a document.
+   *
+   * @param reader       the reader of the document
+   * @param outputStream the output stream, closed by the signer
+   * @param prop         the stamping properties
+   * @throws IOException              on error, or if the signature field is not found
+   * @throws GeneralSecurityException on error in signing
+   */
+  public void sign(final PdfReader reader, final OutputStream outputStream, final StampingProperties prop)
+      throws IOException, GeneralSecurityException {
+
+    final PdfSigner signer = new PdfSigner(reader, outputStream, prop);
+    if (par.getSignDate() != null) {
+      signer.setSignDate((Calendar) par.getSignDate().clone());
+    }
+
+    try (PdfDocument doc = signer.getDocument()) {
+
+      if (
+          (par.getSignatureFieldName() != null)
+          && !(new SignatureUtil(doc)).getBlankSignatureNames()
+          .contains(par.getSignatureFieldName())) {
+        throw new IOException("Field not found");
+      }
+      final PdfSignatureAppearance app = signer.getSignatureAppearance().setReuseAppearance(false);
+      if (par.getReason() != null) {
+        app.setReason(par.getReason());
+      }
+      if (par.getLocation() != null) {
+        app.setLocation(par.getLocation());
+      }
+      if (par.getContact() != null) {
+        app.setContact(par.getContact());
+      }
+      signer.setCertificationLevel(par.getCertificationLevel());
+      final PrivateKeySignature signature = new PrivateKeySignature(key, DigestAlgorithms.SHA256, provider.getName());
+      final BouncyCastleDigest digest = new BouncyCastleDigest();
+      signer.setSignatureEvent(new SignatureEvent(par.getReason(), par.getLocation(), par.getContact()));
+      if (par.getSignatureFieldName() != null) {
+        signer.setFieldName(par.getSignatureFieldName());
+        try (Metrics.Timer timer = Metrics.start("SignPdf.createN0")) {
+          createN0(app, doc);
+        }
+        try (Metrics.Timer timer = Metrics.start("SignPdf.createN2")) {
+          createN2(par, app, doc, signer, chain);
+        }
+      }
+      try (Metrics.Timer timer = Metrics.start("SignPdf.signDetached")) {
+        signer.signDetached(digest, signature, chain, null, null, null, SIGN_SIZE, PdfSigner.CryptoStandard.CMS);
+      }
+    }
+  }
+
+  /**
+   * Signs a document in memory.
+   *
+   * @param inputData the document
+   * @return the signed document
+   * @throws IOException              on error, or if the signature field is not found
+   * @throws GeneralSecurityException on error in signing
+   */
+  public byte[] sign(final byte[] inputData) throws IOException, GeneralSecurityException {
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream(inputData.length + (2 * SIGN_SIZE));
+    try (PdfReader reader = new PdfReader(new ByteArrayInputStream(inputData))) {
+      sign(reader, buffer, createProperties());
+    }
+    return buffer.toByteArray();
+  }
+
+  /**
+   * Processes files listed in a manifest.
+   *
+   * <p>Each file is read into memory and the signed document written
+   * out outside the processing stage of the runner, so that only the
+   * signing itself is limited by the number of documents signed at a
+   * time.  As the documents are kept in memory, the number of pending
+   * jobs is limited to twice that number.  An invalid entry fails as a
+   * job of its own, so that the jobs already submitted are always
+   * allowed to finish.
+   *
+   * @param par     the parameters
+   * @param signPdf the signer
+   * @return true if all files were processed successfully
+   * @throws Exception on error
+   */
+  private static boolean processBatch(final Parameters par, final SignPdf signPdf) throws Exception {
+    final Manifest manifest = new Manifest(par.getBatchFileName());
+    final BatchRunner runner = new BatchRunner(par.getThreads(), 2 * par.getThreads());
+    int failed;
+    try {
+      int row = 0;
+      for (Map<String, String> entry : manifest.getEntries()) {
+        row++;
+        final String inFileName = entry.get("input");
+        final String outFileName = entry.getOrDefault("output", inFileName);
+        runner.submit((inFileName == null) ? ("manifest entry " + row) : inFileName, () -> {
+          if (inFileName == null) {
+            throw new IOException("Input file missing in manifest");
+          }
+          final byte[] inputData = Files.readAllBytes(Paths.get(inFileName));
+          Metrics.count(Metrics.BYTES_READ, inputData.length);
+          final byte[] outputData = runner.compute(() -> signPdf.sign(inputData));
+          final AtomicFileOutputStream out = new AtomicFileOutputStream(outFileName);
+          try {
+            out.write(outputData);
+            out.commit();
+          } finally {
+            out.discard();
+          }
+        });
+      }
+    } finally {
+      failed = runner.finish();
+    }
+    return failed == 0;
+  }
+
   /**
    * Main method.
    *
@@ -200,39 +379,37 @@ public class SignPdf {
 
     final Parameters par = new Parameters(args);
 
-    final String inFileName = par.getFileName(0);
+    if (par.getBatchFileName() != null) {
+      try {
+        if (!processBatch(par, new SignPdf(par))) {
+          log.fine("Batch processing failed");
+          System.exit(1);
+        }
+      } catch (final Exception exception) {
+        System.err.println("Error processing batch, exception: " + exception);
+        log.fine("Error processing batch, exception: " + exception);
+        System.exit(1);
+      }
+      log.fine("Application terminated normally");
+      return;
+    }
+
     byte[] inputData = null;
     String outFileName = null;
-    PrivateKey key = null;
-    Certificate[] chain = null;
 
-    try {
+    try (Metrics.Timer timer = Metrics.start("SignPdf.read")) {
       inputData = Files.readAllBytes(Paths.get(par.getFileName(0)));
       outFileName = par.getFileName(par.numberFileNames() - 1);
+      Metrics.count(Metrics.BYTES_READ, inputData.length);
     } catch (final Exception exception) {
       System.err.println("Error opening files, exception: " + exception);
       log.fine("Error opening files, exception: " + exception);
       System.exit(1);
     }
 
-    BouncyCastleProvider provider = null;
-    String alias = par.getAlias();
+    SignPdf signPdf = null;
     try {
-      provider = new BouncyCastleProvider();
-      Security.addProvider(provider);
-      final KeyStore keyStore = KeyStore.getInstance("pkcs12");
-      keyStore.load(new FileInputStream(par.getKeyFileName()), par.getPassword());
-      if (alias != null) {
-        if (!keyStore.containsAlias(alias)) {
-          System.err.println("Alias not found");
-          log.fine("Alias not found");
-          System.exit(1);
-        }
-      } else {
-        alias = keyStore.aliases().nextElement();
-      }
-      key = (PrivateKey) keyStore.getKey(alias, par.getPassword());
-      chain = keyStore.getCertificateChain(alias);
+      signPdf = new SignPdf(par);
     } catch (final Exception exception) {
       System.err.println("Error setting up cryptography, exception: " + exception);
       log.fine("Error setting up cryptography, exception: " + exception);
@@ -240,44 +417,8 @@ public class SignPdf {
     }
 
     try (PdfReader reader = new PdfReader(new ByteArrayInputStream(inputData))) {
-
-      final StampingProperties prop = new StampingProperties().preserveEncryption();
-      if (par.getSignatureAppend()) {
-        prop.useAppendMode();
-      }
-      final PdfSigner signer = new PdfSigner(reader, new FileOutputStream(outFileName), prop);
-
-      try (PdfDocument doc = signer.getDocument()) {
-
-        if (
-            (par.getSignatureFieldName() != null)
-            && !(new SignatureUtil(doc)).getBlankSignatureNames()
-            .contains(par.getSignatureFieldName())) {
-          System.err.println("Field not found");
-          log.fine("Field not found");
-          System.exit(1);
-        }
-        final PdfSignatureAppearance app = signer.getSignatureAppearance().setReuseAppearance(false);
-        if (par.getReason() != null) {
-          app.setReason(par.getReason());
-        }
-        if (par.getLocation() != null) {
-          app.setLocation(par.getLocation());
-        }
-        if (par.getContact() != null) {
-          app.setContact(par.getContact());
-        }
-        signer.setCertificationLevel(par.getCertificationLevel());
-        final PrivateKeySignature signature = new PrivateKeySignature(key, DigestAlgorithms.SHA256, provider.getName());
-        final BouncyCastleDigest digest = new BouncyCastleDigest();
-        signer.setSignatureEvent(new SignatureEvent(par.getReason(), par.getLocation(), par.getContact()));
-        if (par.getSignatureFieldName() != null) {
-          signer.setFieldName(par.getSignatureFieldName());
-          createN0(app, doc);
-          createN2(par, app, doc, signer, chain);
-        }
-        signer.signDetached(digest, signature, chain, null, null, null, SIGN_SIZE, PdfSigner.CryptoStandard.CMS);
-      }
+      signPdf.sign(reader, new FileOutputStream(outFileName), signPdf.createProperties());
+      Metrics.countFile(Metrics.BYTES_WRITTEN, outFileName);
     } catch (final Exception exception) {
       System.err.println("Error processing files, exception: " + exception);
       log.fine("Error processing files, exception: " + exception);
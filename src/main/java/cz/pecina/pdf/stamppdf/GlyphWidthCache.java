@@ -0,0 +1,169 @@
+/* GlyphWidthCache.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+package cz.pecina.pdf.stamppdf;
+
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.otf.Glyph;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * Cache of glyph advances of a font.
+ *
+ * <p>The advances, in thousandths of the font size, are kept in blocks
+ * of 256 code points, allocated when a code point of the block is
+ * first measured, so that measuring a string does not query the font
+ * for any code point measured before.  The cache is bound to the font
+ * program, not to a font of a particular document or page, so that it
+ * can be kept for the whole run.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class GlyphWidthCache {
+
+  // static logger
+  private static final Logger log = Logger.getLogger(GlyphWidthCache.class.getName());
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "GlyphWidthCache";
+  }
+
+  // block size in bits
+  private static final int BLOCK_BITS = 8;
+
+  // mask of the code point within a block
+  private static final int BLOCK_MASK = (1 << BLOCK_BITS) - 1;
+
+  // number of blocks
+  private static final int NUMBER_BLOCKS = (Character.MAX_CODE_POINT >> BLOCK_BITS) + 1;
+
+  // unknown advance
+  private static final int UNKNOWN = -1;
+
+  // units per font size
+  private static final float UNITS = 1000f;
+
+  // percent
+  private static final float PERCENT = 100f;
+
+  // the font program
+  private final FontProgram fontProgram;
+
+  // blocks of advances
+  private final int[][] blocks = new int[NUMBER_BLOCKS][];
+
+  /**
+   * Creates the cache.
+   *
+   * @param fontProgram the font program
+   */
+  public GlyphWidthCache(final FontProgram fontProgram) {
+    this.fontProgram = fontProgram;
+    log.fine("Glyph width cache created");
+  }
+
+  /**
+   * Gets the advance of a code point.
+   *
+   * @param codePoint the code point
+   * @return the advance, in thousandths of the font size
+   */
+  public int getWidth(final int codePoint) {
+    int[] block = blocks[codePoint >> BLOCK_BITS];
+    if (block == null) {
+      block = new int[BLOCK_MASK + 1];
+      Arrays.fill(block, UNKNOWN);
+      blocks[codePoint >> BLOCK_BITS] = block;
+    }
+    int width = block[codePoint & BLOCK_MASK];
+    if (width == UNKNOWN) {
+      Glyph glyph = fontProgram.getGlyph(codePoint);
+      if (glyph == null) {
+        glyph = fontProgram.getGlyphByCode(0);
+      }
+      width = (glyph == null) ? 0 : glyph.getWidth();
+      block[codePoint & BLOCK_MASK] = width;
+    }
+    return width;
+  }
+
+  /**
+   * Gets the width of a string.
+   *
+   * @param text              the string
+   * @param fontSize          the font size
+   * @param characterSpacing  the character spacing
+   * @param horizontalScaling the horizontal scaling, in percent
+   * @return the width, in text space units
+   */
+  public float getWidth(
+      final String text,
+      final float fontSize,
+      final float characterSpacing,
+      final float horizontalScaling) {
+    int units = 0;
+    int count = 0;
+    for (int i = 0; i < text.length();) {
+      final int codePoint = text.codePointAt(i);
+      units += getWidth(codePoint);
+      count++;
+      i += Character.charCount(codePoint);
+    }
+    return ((units * fontSize / UNITS) + (count * characterSpacing)) * horizontalScaling / PERCENT;
+  }
+
+  /**
+   * Gets the length of the longest prefix of a string that fits in a
+   * width.
+   *
+   * @param text              the string
+   * @param fontSize          the font size
+   * @param characterSpacing  the character spacing
+   * @param horizontalScaling the horizontal scaling, in percent
+   * @param width             the width, in text space units
+   * @return the number of chars of the prefix, at least one code point
+   *         if the string is not empty
+   */
+  public int fit(
+      final String text,
+      final float fontSize,
+      final float characterSpacing,
+      final float horizontalScaling,
+      final float width) {
+    final float limit = width * PERCENT / horizontalScaling;
+    float prefixWidth = 0f;
+    int end = 0;
+    while (end < text.length()) {
+      final int codePoint = text.codePointAt(end);
+      prefixWidth += (getWidth(codePoint) * fontSize / UNITS) + characterSpacing;
+      if ((prefixWidth > limit) && (end > 0)) {
+        break;
+      }
+      end += Character.charCount(codePoint);
+    }
+    return end;
+  }
+}
@@ -22,12 +22,14 @@
 
 package cz.pecina.pdf.stamppdf;
 
+import cz.pecina.pdf.util.Metrics;
 import cz.pecina.seqparser.CommandLine;
 import cz.pecina.seqparser.Options;
 import cz.pecina.seqparser.Parameter;
 import cz.pecina.seqparser.ParameterType;
 import cz.pecina.seqparser.ParseException;
 import cz.pecina.seqparser.SeqParser;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -54,6 +56,18 @@ public class Parameters {
           .addOption("ar", "arc", 6)
             .addSubOption(ParameterType.Double)
 
+          .addOption("bc", "barcode", 4)
+            .addSubOption(ParameterType.String)
+            .addSubOption(ParameterType.String)
+            .addSubOption(ParameterType.Float)
+            .addSubOption(ParameterType.Float)
+            .addKwSubOption("c", ParameterType.String)
+            .addKwSubOption("ec", ParameterType.String)
+            .addKwSubOption("fc", ParameterType.String)
+            .addKwSubOption("h", ParameterType.PosFloat)
+            .addKwSubOption("ps", ParameterType.NonNegFloat)
+            .addKwSubOption("w", ParameterType.PosFloat)
+
           .addOption("c", "color", 1, 2)
             .addSubOption(ParameterType.String)
 
@@ -171,6 +185,20 @@ public class Parameters {
             .addKwSubOption("tr", ParameterType.Float)
             .addKwSubOption("ws", ParameterType.Float)
 
+          .addOption("tb", "text-box", 4)
+            .addSubOption(ParameterType.String)
+            .addSubOption(ParameterType.Float)
+            .addSubOption(ParameterType.Float)
+            .addSubOption(ParameterType.PosFloat)
+            .addKwSubOption("al", ParameterType.String)
+            .addKwSubOption("c", ParameterType.String)
+            .addKwSubOption("fc", ParameterType.String)
+            .addKwSubOption("ff", ParameterType.String)
+            .addKwSubOption("h", ParameterType.PosFloat)
+            .addKwSubOption("le", ParameterType.Float)
+            .addKwSubOption("ms", ParameterType.PosFloat)
+            .addKwSubOption("ps", ParameterType.PosFloat)
+
           .addOption("tm", "text-matrix", 6)
             .addSubOption(ParameterType.Float)
 
@@ -180,6 +208,9 @@ public class Parameters {
           .addOption("tr", "text-rise", 1)
             .addSubOption(ParameterType.Float)
 
+          .addOption("v", "value", 2, Integer.MAX_VALUE)
+            .addSubOption(ParameterType.String)
+
           .addOption("ws", "word-spacing", 1)
             .addSubOption(ParameterType.Float)
 
@@ -205,12 +236,18 @@ public class Parameters {
    *
    */
   public void usage() {
-    System.out.println("Usage:\n  stamppdf [COMMAND...] [--] INPUT-FILE [OUTPUT-FILE]");
+    System.out.println("Usage:\n  stamppdf [--metrics FILE] [COMMAND...] [--] INPUT-FILE [OUTPUT-FILE]");
+    System.out.println("  stamppdf [--metrics FILE] --data FILE [--threads NUM] [COMMAND...]");
     System.out.println("  stamppdf -?|--help");
     System.out.println("  stamppdf -V|--version");
     System.out.println("\nCommands:");
     System.out.println("\n  -ar|--arc X1:Y1:X2:Y2:ARC:EXTENT");
     System.out.println("    draw arc segment");
+    System.out.println("\n  -bc|--barcode TYPE:CODE:X:Y[:w=WIDTH][:h=HEIGHT][:c=CORNER][:fc=COLOR]");
+    System.out.println("               [:ps=SIZE][:ec=LEVEL]");
+    System.out.println("    draw barcode, \"code128\" with text of SIZE (default: font size, 0 = none),");
+    System.out.println("    or \"qr\" with error correction LEVEL (L, M, Q or H); CODE can include");
+    System.out.println("    variables, but not \"^\" (default: natural dimensions)");
     System.out.println("\n  -c|--color COLOR|FILL-COLOR:STROKE-COLOR");
     System.out.println("    set color (default: black)");
     System.out.println("\n  -cft|--curve-from-to X1:Y1:X3:Y3");
@@ -284,22 +321,41 @@ public class Parameters {
     System.out.println("            [:ps=SIZE][:rm=RENDERING-MODE][:sc=STROKE-COLOR]");
     System.out.println("            [:tr=TEXT-RISE][:ws=WORD-SPACING]");
     System.out.println("    write text");
+    System.out.println("\n  -tb|--text-box TEXT:X:Y:WIDTH[:al=ALIGNMENT][:c=CORNER][:fc=FILL-COLOR]");
+    System.out.println("                [:ff=FONT][:h=HEIGHT][:le=LEADING][:ms=MIN-SIZE][:ps=SIZE]");
+    System.out.println("    write text wrapped in box, aligned left (\"l\", default), to the center (\"c\")");
+    System.out.println("    or right (\"r\"); the font size and leading are reduced down to MIN-SIZE");
+    System.out.println("    until all words fit in the width and the lines in HEIGHT (default: any)");
     System.out.println("\n  -tm|--text-matrix A:B:C:D:X:Y");
     System.out.println("    set text matrix");
     System.out.println("\n  -tp|--text-pos X:Y");
     System.out.println("    set text position");
     System.out.println("\n  -tr|--text-rise NUM");
     System.out.println("    set text rise (default: 0)");
+    System.out.println("\n  -v|--value NAME:VALUE");
+    System.out.println("    define variable for use in text (value may contain \":\")");
     System.out.println("\n  -ws|--word-spacing NUM");
     System.out.println("    set word spacing (default: 0)");
     System.out.println("\n  -x|--literal STR");
     System.out.println("    write arbitrary string to content stream");
     System.out.println("\nNegative positions (incl. \"-0\") are calculated in reverse direction from the");
     System.out.println("edge of the page.");
+    System.out.println("\nWith --metrics, which must precede the commands, metrics are written to FILE");
+    System.out.println("(\"-\" = standard error).");
+    System.out.println("\nWith --data, which must precede the commands, the files listed in the CSV or");
+    System.out.println("JSONL (\".jsonl\") FILE are stamped: column \"input\" is the input file,");
+    System.out.println("\"output\" the output file (default: input file), other columns are values of");
+    System.out.println("variables for use in text; --threads sets the number of documents processed");
+    System.out.println("at a time (default: number of processors).");
     System.out.println("\nColors can be specified in hex or by name (e.g., \"magenta\").");
     System.out.println("\nText can include variables: \"{page}\" = page number, \"{pages}\" = total number");
     System.out.println("of pages, \"{filename}\" = file name, without path, \"{pathname}\" = file name,");
-    System.out.println("incl. path. New line can be inserted by \"^\".");
+    System.out.println("incl. path, \"{date}\" = current date, \"{meta,KEY}\" = document information");
+    System.out.println("entry (e.g., \"{meta,Title}\"), \"{NAME}\" = value defined by --value or by a");
+    System.out.println("column of --data; undefined values and other text in braces are printed as is.");
+    System.out.println("Page numbers can be formatted as roman numerals (\"{page,r}\", \"{page,R}\"),");
+    System.out.println("letters (\"{page,a}\", \"{page,A}\") or with leading zeros (\"{page,3}\"), the date");
+    System.out.println("using a pattern (e.g., \"{date,d.M.yyyy}\"). New line can be inserted by \"^\".");
     System.out.println("\nReference corner can be specified as: \"ll\" = lower left (default), \"lr\" =");
     System.out.println("lower right, \"ul\" = upper right, \"ur\" = upper right.");
   }
@@ -307,6 +363,8 @@ public class Parameters {
   // parsed parameters
   private List<Parameter> parameters;
   private String[] fileNames;
+  private String dataFileName;
+  private int threads = Runtime.getRuntime().availableProcessors();
 
   /**
    * Gets the parameters.
@@ -345,6 +403,24 @@ public class Parameters {
     return fileNames[n];
   }
 
+  /**
+   * Gets the data source file name.
+   *
+   * @return the data source file name, or null if not in batch mode
+   */
+  public String getDataFileName() {
+    return dataFileName;
+  }
+
+  /**
+   * Gets the number of documents processed at a time.
+   *
+   * @return the number of documents processed at a time
+   */
+  public int getThreads() {
+    return threads;
+  }
+
   /**
    * Default constructor.
    *
@@ -371,9 +447,44 @@ public class Parameters {
       System.exit(0);
     }
 
+    int first = 0;
+    boolean preamble = true;
+    while (preamble && (args.length > (first + 1))) {
+      switch (args[first]) {
+        case "--metrics": {
+          Metrics.enable("stamppdf", args[first + 1]);
+          first += 2;
+          break;
+        }
+        case "--data": {
+          dataFileName = args[first + 1];
+          first += 2;
+          break;
+        }
+        case "--threads": {
+          try {
+            threads = Integer.parseInt(args[first + 1]);
+          } catch (final NumberFormatException exception) {
+            threads = 0;
+          }
+          if (threads < 1) {
+            System.err.println("Number of threads must be positive");
+            log.fine("Number of threads out of range");
+            System.exit(1);
+          }
+          first += 2;
+          break;
+        }
+        default: {
+          preamble = false;
+        }
+      }
+    }
+    final String[] commandArgs = Arrays.copyOfRange(args, first, args.length);
+
     CommandLine line = null;
     try {
-      line = new SeqParser(':').parse(options, args, true);
+      line = new SeqParser(':').parse(options, commandArgs, true);
     } catch (final Exception exception) {
       System.err.println("Failed to parse the command line, exception: " + exception);
       usage();
@@ -384,7 +495,7 @@ public class Parameters {
     fileNames = new String[line.getRemArgs().size()];
     fileNames = line.getRemArgs().toArray(fileNames);
     final int fnLen = fileNames.length;
-    if ((fnLen < 1) || (fnLen > 2)) {
+    if ((dataFileName != null) ? (fnLen > 0) : ((fnLen < 1) || (fnLen > 2))) {
       usage();
       log.fine("Error in parameters");
       System.exit(1);
@@ -22,6 +22,10 @@
 
 package cz.pecina.pdf.stamppdf;
 
+import com.itextpdf.barcodes.Barcode128;
+import com.itextpdf.barcodes.BarcodeQRCode;
+import com.itextpdf.barcodes.qrcode.EncodeHintType;
+import com.itextpdf.barcodes.qrcode.ErrorCorrectionLevel;
 import com.itextpdf.io.font.FontProgram;
 import com.itextpdf.io.font.FontProgramFactory;
 import com.itextpdf.io.font.PdfEncodings;
@@ -38,23 +42,30 @@ import com.itextpdf.kernel.pdf.PdfReader;
 import com.itextpdf.kernel.pdf.PdfWriter;
 import com.itextpdf.kernel.pdf.StampingProperties;
 import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
 import com.itextpdf.kernel.pdf.xobject.PdfXObject;
 import com.itextpdf.layout.element.Image;
 import com.itextpdf.svg.converter.SvgConverter;
+import cz.pecina.pdf.util.AtomicFileOutputStream;
+import cz.pecina.pdf.util.BatchRunner;
+import cz.pecina.pdf.util.IncrementalOutputStream;
+import cz.pecina.pdf.util.Manifest;
+import cz.pecina.pdf.util.Metrics;
 import cz.pecina.seqparser.Parameter;
 import cz.pecina.seqparser.SubParameter;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 /**
@@ -92,6 +103,13 @@ public class StampPdf {
   private static final int DEFAULT_TEXT_RENDERING_MODE = 0;
   private static final float DEFAULT_TEXT_HORIZONTAL_SCALING = 100f;
 
+  // estimated size of the incremental update
+  private static final int UPDATE_SIZE = 0x10000;
+
+  // text box defaults
+  private static final String DEFAULT_ALIGNMENT = "l";
+  private static final float SHRINK_STEP = .25f;
+
   // font parameters
   private String fontFilename = DEFAULT_FONT_FILENAME;
   private float fontSize = DEFAULT_FONT_SIZE;
@@ -104,12 +122,22 @@ public class StampPdf {
 
   // other fields
   private Parameters par;
+  private String pathname;
   private int numPages;
-  private boolean[] pageNums;
+  private BitSet pageNums;
   private Map<String, PdfXObject> images = new HashMap<>();
+  private Map<String, PdfFormXObject> barcodes = new HashMap<>();
   private Map<String, FontProgram> fontPrograms = new HashMap<>();
   private Map<String, PdfFont> fonts = new HashMap<>();
-  private List<List<Parameter>> cmds = new ArrayList<>();
+  private Map<FontProgram, GlyphWidthCache> glyphWidths = new HashMap<>();
+  private Map<String, TextTemplate> templates = new HashMap<>();
+  private Map<String, String> values = new HashMap<>();
+  private Map<String, String> rowValues = new HashMap<>();
+  private TextTemplate.Context context;
+  private StringBuilder buffer = new StringBuilder();
+  private List<Group> groups = new ArrayList<>();
+  private Group group;
+  private List<Parameter> cmds = new ArrayList<>();
   private Parameter cmd;
   private SubParameter subParameter;
   private PdfCanvas canvas;
@@ -117,6 +145,46 @@ public class StampPdf {
   private float pageHeight;
   private boolean textBegun = false;
 
+  // commands applied to the same set of pages
+  private static final class Group {
+    private final BitSet pages;
+    private final List<Parameter> cmds = new ArrayList<>();
+
+    // creates an empty group
+    private Group(final BitSet pages) {
+      this.pages = pages;
+    }
+  }
+
+  // values of variables taken from the document
+  private final class DocumentContext implements TextTemplate.Context {
+    private final PdfDocument doc;
+
+    // creates the context
+    private DocumentContext(final PdfDocument doc) {
+      this.doc = doc;
+    }
+
+    // for description see TextTemplate.Context
+    @Override
+    public String getPathname() {
+      return pathname;
+    }
+
+    // for description see TextTemplate.Context
+    @Override
+    public String getMetadata(final String key) {
+      return doc.getDocumentInfo().getMoreInfo(key);
+    }
+
+    // for description see TextTemplate.Context
+    @Override
+    public String getValue(final String name) {
+      final String value = rowValues.get(name);
+      return (value == null) ? values.get(name) : value;
+    }
+  }
+
   /**
    * Reports error and exits.
    *
@@ -210,7 +278,7 @@ public class StampPdf {
           break;
         }
         default: {
-          error("Invalid corner");
+          throw new IllegalArgumentException("Invalid corner");
         }
       }
     }
@@ -242,7 +310,7 @@ public class StampPdf {
           break;
         }
         default: {
-          error("Invalid corner");
+          throw new IllegalArgumentException("Invalid corner");
         }
       }
     }
@@ -273,7 +341,7 @@ public class StampPdf {
     for (int i = 0; i < num; i++) {
       final SubParameter sub = cmd.getSubParameter(i);
       if (sub == null) {
-        error(message);
+        throw new IllegalArgumentException(message);
       }
       res[i] = sub.getAsDouble();
     }
@@ -295,6 +363,10 @@ public class StampPdf {
   // first parsing pass
   private void pass1(final PdfDocument doc) throws FileNotFoundException, IOException {
 
+    try (Metrics.Timer timer = Metrics.start("StampPdf.fontLoad")) {
+      fontPrograms.put(DEFAULT_FONT_FILENAME, FontProgramFactory.createFont(DEFAULT_FONT_FILENAME));
+    }
+
     for (Parameter tempCmd : par.getParameters()) {
       cmd = tempCmd;
 
@@ -303,64 +375,95 @@ public class StampPdf {
       switch (name) {
 
         case "pages": {
-          Arrays.fill(pageNums, false);
+          pageNums = new BitSet();
+          group = null;
           for (SubParameter sub : cmd.getSubParameters()) {
             final String[] range = sub.getAsString().split("-", 2);
             if (range.length == 1) {
               final int num = Integer.valueOf(range[0]);
               if (num < 1) {
-                error("Invalid page number: " + num);
+                throw new IllegalArgumentException("Invalid page number: " + num);
               }
               if (num <= numPages) {
-                pageNums[num - 1] = true;
+                pageNums.set(num - 1);
               }
             } else {
               final int from = (range[0].length() == 0) ? 1 : Integer.valueOf(range[0]);
               final int to = (range[1].length() == 0) ? numPages : Integer.valueOf(range[1]);
               if (from < 1) {
-                error("Invalid page number: " + from);
+                throw new IllegalArgumentException("Invalid page number: " + from);
               }
-              for (int pageNum = from; pageNum <= to; pageNum++) {
-                if (pageNum <= numPages) {
-                  pageNums[pageNum - 1] = true;
-                }
+              if (from <= Math.min(to, numPages)) {
+                pageNums.set(from - 1, Math.min(to, numPages));
               }
             }
           }
           break;
         }
 
+        case "value": {
+          final StringBuilder value = new StringBuilder(cmd.getSubParameter(1).getAsString());
+          for (int i = 2; i < cmd.getNumSubParameters(); i++) {
+            value.append(':').append(cmd.getSubParameter(i).getAsString());
+          }
+          values.put(cmd.getSubParameter(0).getAsString(), value.toString());
+          break;
+        }
+
         default: {
 
           switch (name) {
 
             case "image": {
               final String imageFilename = cmd.getSubParameter(0).getAsString();
-              final Image image = imageFilename.toLowerCase().endsWith(".svg")
-                  ? SvgConverter.convertToImage(new FileInputStream(imageFilename), doc)
-                  : new Image(ImageDataFactory.create(imageFilename));
-              images.put(imageFilename, image.getXObject());
+              final boolean svg = imageFilename.toLowerCase().endsWith(".svg");
+              try (Metrics.Timer timer = Metrics.start(svg ? "StampPdf.svg" : "StampPdf.image")) {
+                final Image image = svg
+                    ? SvgConverter.convertToImage(new FileInputStream(imageFilename), doc)
+                    : new Image(ImageDataFactory.create(imageFilename));
+                images.put(imageFilename, image.getXObject());
+              }
               break;
             }
 
             case "font-file": {
               final String font = cmd.getSubParameter(0).getAsString();
-              try {
+              try (Metrics.Timer timer = Metrics.start("StampPdf.fontLoad")) {
                 fontPrograms.put(font, FontProgramFactory.createFont(font));
               } catch (final Exception exception) {
-                error("Failed to process font: " + font);
+                throw new IllegalArgumentException("Failed to process font: " + font, exception);
               }
               break;
             }
 
-            case "text": {
+            case "barcode": {
+              final String code = cmd.getSubParameter(1).getAsString();
+              if (code.indexOf('^') >= 0) {
+                throw new IllegalArgumentException("Invalid barcode: new line not allowed");
+              }
+              try {
+                templates.computeIfAbsent(code, TextTemplate::new);
+              } catch (final IllegalArgumentException exception) {
+                throw new IllegalArgumentException("Invalid barcode: " + exception.getMessage(), exception);
+              }
+              break;
+            }
+
+            case "text":
+            case "text-box": {
+              final String text = cmd.getSubParameter(0).getAsString();
+              try {
+                templates.computeIfAbsent(text, TextTemplate::new);
+              } catch (final IllegalArgumentException exception) {
+                throw new IllegalArgumentException("Invalid text: " + exception.getMessage(), exception);
+              }
               final SubParameter sub = cmd.getKwSubParameter("ff");
               if (sub != null) {
                 final String font = sub.getAsString();
-                try {
+                try (Metrics.Timer timer = Metrics.start("StampPdf.fontLoad")) {
                   fontPrograms.put(font, FontProgramFactory.createFont(font));
                 } catch (final Exception exception) {
-                  error("Failed to process font: " + font);
+                  throw new IllegalArgumentException("Failed to process font: " + font, exception);
                 }
               }
               break;
@@ -371,11 +474,11 @@ public class StampPdf {
             }
           }
 
-          for (int pageNum = 0; pageNum < numPages; pageNum++) {
-            if (pageNums[pageNum]) {
-              cmds.get(pageNum).add(cmd);
-            }
+          if (group == null) {
+            group = new Group(pageNums);
+            groups.add(group);
           }
+          group.cmds.add(cmd);
         }
       }
     }
@@ -417,7 +520,7 @@ public class StampPdf {
     final SubParameter posX = cmd.getSubParameter(1);
     final SubParameter posY = cmd.getSubParameter(2);
     if ((posX.isEmpty()) || posY.isEmpty()) {
-      error("Invalid image position");
+      throw new IllegalArgumentException("Invalid image position");
     }
     arr[0] = adjustXFloat(posX);
     arr[2] = adjustYFloat(posY);
@@ -425,6 +528,111 @@ public class StampPdf {
     canvas.addXObject(image, new Rectangle(arr[0], arr[1], imageScaleX, imageScaleY));
   }
 
+  // create barcode symbol
+  private PdfFormXObject createBarcode(
+      final PdfDocument doc,
+      final String type,
+      final String code,
+      final Color color,
+      final float textSize) {
+    switch (type) {
+      case "code128": {
+        final Barcode128 barcode = new Barcode128(doc, fonts.get(fontFilename));
+        if (textSize > 0f) {
+          barcode.setSize(textSize);
+          barcode.setBaseline(textSize);
+        } else {
+          barcode.setFont(null);
+        }
+        try {
+          barcode.setCode(code);
+          return barcode.createFormXObject(color, color, doc);
+        } catch (final IllegalArgumentException exception) {
+          throw new IllegalArgumentException("Failed to encode barcode: " + exception.getMessage(), exception);
+        }
+      }
+      case "qr": {
+        final Map<EncodeHintType, Object> hints = new HashMap<>();
+        final SubParameter level = cmd.getKwSubParameter("ec");
+        if (level != null) {
+          switch (level.getAsString()) {
+            case "L": {
+              hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.L);
+              break;
+            }
+            case "M": {
+              hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M);
+              break;
+            }
+            case "Q": {
+              hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.Q);
+              break;
+            }
+            case "H": {
+              hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
+              break;
+            }
+            default: {
+              throw new IllegalArgumentException("Invalid error correction level");
+            }
+          }
+        }
+        try {
+          return new BarcodeQRCode(code, hints).createFormXObject(color, doc);
+        } catch (final IllegalArgumentException exception) {
+          throw new IllegalArgumentException("Failed to encode barcode: " + exception.getMessage(), exception);
+        }
+      }
+      default: {
+        throw new IllegalArgumentException("Invalid barcode type: " + type);
+      }
+    }
+  }
+
+  // parse barcode
+  private void parseBarcode(final PdfDocument doc, final int pageNum) {
+
+    final String type = cmd.getSubParameter(0).getAsString();
+    final TextTemplate template = templates.get(cmd.getSubParameter(1).getAsString());
+    final String code = template.render(buffer, 0, pageNum + 1, numPages, context);
+    final String colorName = cmd.hasKwSubParameter("fc") ? cmd.getKwSubParameter("fc").getAsString() : null;
+    final float textSize = cmd.hasKwSubParameter("ps") ? cmd.getKwSubParameter("ps").getAsFloat() : fontSize;
+    final String level = cmd.hasKwSubParameter("ec") ? cmd.getKwSubParameter("ec").getAsString() : null;
+    final String key =
+        type + '\n' + level + '\n' + fontFilename + '\n' + colorName + '\n' + textSize + '\n' + code;
+
+    PdfFormXObject symbol = barcodes.get(key);
+    if (symbol == null) {
+      try (Metrics.Timer timer = Metrics.start("StampPdf.barcode")) {
+        symbol = createBarcode(
+            doc,
+            type,
+            code,
+            (colorName == null) ? DEFAULT_FILL_COLOR : WebColors.getRGBColor(colorName),
+            textSize);
+      }
+      barcodes.put(key, symbol);
+    }
+
+    final SubParameter width = cmd.getKwSubParameter("w");
+    final SubParameter height = cmd.getKwSubParameter("h");
+    final float[] arr = new float[4];
+    arr[0] = adjustXFloat(cmd.getSubParameter(2));
+    arr[1] = adjustYFloat(cmd.getSubParameter(3));
+    arr[2] = (width == null) ? 0f : width.getAsFloat();
+    arr[3] = (height == null) ? 0f : height.getAsFloat();
+    if ((arr[2] > 0f) && (arr[3] <= 0f)) {
+      arr[3] = symbol.getHeight() * arr[2] / symbol.getWidth();
+    } else if ((arr[2] <= 0f) && (arr[3] > 0f)) {
+      arr[2] = symbol.getWidth() * arr[3] / symbol.getHeight();
+    } else if ((arr[2] <= 0f) && (arr[3] <= 0f)) {
+      arr[2] = symbol.getWidth();
+      arr[3] = symbol.getHeight();
+    }
+    adjustCorner(arr);
+    canvas.addXObject(symbol, new Rectangle(arr[0], arr[1], arr[2], arr[3]));
+  }
+
   // begin text if needed
   private void beginText() {
     if (!textBegun) {
@@ -480,25 +688,151 @@ public class StampPdf {
       final SubParameter subX = cmd.getSubParameter(1);
       final SubParameter subY = cmd.getSubParameter(2);
       if ((subX == null) || (subY == null)) {
-        error("Invalid text position");
+        throw new IllegalArgumentException("Invalid text position");
       }
       final float textX = adjustXFloat(subX);
       final float textY = adjustYFloat(subY);
       canvas.setTextMatrix(textX, textY);
     } else if (numSubPar != 1) {
-      error("Invalid text position parameters");
+      throw new IllegalArgumentException("Invalid text position parameters");
     }
-    String text = cmd.getSubParameter(0).getAsString();
-    text = text.replace("{page}", "" + (pageNum + 1));
-    text = text.replace("{pages}", "" + numPages);
-    final String inputFilename = par.getFileName(0);
-    text = text.replace("{pathname}", inputFilename);
-    final String[] parts = inputFilename.split(".+?/(?=[^/]+$)");
-    text = text.replace("{filename}", parts[parts.length - 1]);
-    final String[] lines = text.split("\\^");
-    canvas.showText(lines[0]);
-    for (int i = 1; i < lines.length; i++) {
-      canvas.newlineShowText(lines[i]);
+    final TextTemplate template = templates.get(cmd.getSubParameter(0).getAsString());
+    canvas.showText(template.render(buffer, 0, pageNum + 1, numPages, context));
+    for (int i = 1; i < template.getNumberLines(); i++) {
+      canvas.newlineShowText(template.render(buffer, i, pageNum + 1, numPages, context));
+    }
+
+    canvas.restoreState();
+  }
+
+  // break paragraphs into lines not wider than the box; if a word does
+  // not fit on a line, it is broken if allowed, otherwise null is returned
+  private List<String> wrapText(
+      final List<String> paragraphs,
+      final GlyphWidthCache widths,
+      final float size,
+      final float width,
+      final boolean breakWords) {
+    final List<String> lines = new ArrayList<>();
+    final float spaceWidth = widths.getWidth(" ", size, characterSpacing, horizontalScaling);
+    final StringBuilder line = new StringBuilder();
+    for (String paragraph : paragraphs) {
+      line.setLength(0);
+      float lineWidth = 0f;
+      for (String word : paragraph.split(" ")) {
+        if (word.isEmpty()) {
+          continue;
+        }
+        final float wordWidth = widths.getWidth(word, size, characterSpacing, horizontalScaling);
+        if ((line.length() > 0) && ((lineWidth + spaceWidth + wordWidth) <= width)) {
+          line.append(' ').append(word);
+          lineWidth += spaceWidth + wordWidth;
+          continue;
+        }
+        if (line.length() > 0) {
+          lines.add(line.toString());
+          line.setLength(0);
+        }
+        String rest = word;
+        lineWidth = wordWidth;
+        while (lineWidth > width) {
+          if (!breakWords) {
+            return null;
+          }
+          final int end = widths.fit(rest, size, characterSpacing, horizontalScaling, width);
+          lines.add(rest.substring(0, end));
+          rest = rest.substring(end);
+          lineWidth = widths.getWidth(rest, size, characterSpacing, horizontalScaling);
+        }
+        line.append(rest);
+      }
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  // parse text box
+  private void parseTextBox(final int pageNum) {
+
+    final SubParameter subX = cmd.getSubParameter(1);
+    final SubParameter subY = cmd.getSubParameter(2);
+    final SubParameter subWidth = cmd.getSubParameter(3);
+    if ((subX == null) || (subY == null) || (subWidth == null)) {
+      throw new IllegalArgumentException("Invalid text box parameters");
+    }
+    final String tempFontFilename =
+        cmd.hasKwSubParameter("ff") ? cmd.getKwSubParameter("ff").getAsString() : fontFilename;
+    final float maxFontSize = cmd.hasKwSubParameter("ps") ? cmd.getKwSubParameter("ps").getAsFloat() : fontSize;
+    final float minFontSize = cmd.hasKwSubParameter("ms") ? cmd.getKwSubParameter("ms").getAsFloat() : maxFontSize;
+    final float maxLeading = cmd.hasKwSubParameter("le") ? cmd.getKwSubParameter("le").getAsFloat() : leading;
+    final float boxHeight = cmd.hasKwSubParameter("h") ? cmd.getKwSubParameter("h").getAsFloat() : 0f;
+    final String alignment =
+        cmd.hasKwSubParameter("al") ? cmd.getKwSubParameter("al").getAsString() : DEFAULT_ALIGNMENT;
+    final float[] arr = {adjustXFloat(subX), adjustYFloat(subY), subWidth.getAsFloat(), boxHeight};
+
+    final GlyphWidthCache widths =
+        glyphWidths.computeIfAbsent(fontPrograms.get(tempFontFilename), GlyphWidthCache::new);
+    final TextTemplate template = templates.get(cmd.getSubParameter(0).getAsString());
+    final List<String> text = new ArrayList<>();
+    for (int i = 0; i < template.getNumberLines(); i++) {
+      text.add(template.render(buffer, i, pageNum + 1, numPages, context));
+    }
+
+    float tempFontSize = maxFontSize;
+    List<String> lines = wrapText(text, widths, tempFontSize, arr[2], false);
+    while (((lines == null)
+        || ((boxHeight > 0f) && ((lines.size() * maxLeading * tempFontSize / maxFontSize) > boxHeight)))
+        && ((tempFontSize - SHRINK_STEP) >= minFontSize)) {
+      tempFontSize -= SHRINK_STEP;
+      lines = wrapText(text, widths, tempFontSize, arr[2], false);
+    }
+    if (lines == null) {
+      lines = wrapText(text, widths, tempFontSize, arr[2], true);
+    }
+    final float tempLeading = maxLeading * tempFontSize / maxFontSize;
+    if (boxHeight <= 0f) {
+      arr[3] = lines.size() * tempLeading;
+    }
+    adjustCorner(arr);
+
+    canvas.saveState();
+
+    beginText();
+
+    canvas.setCharacterSpacing(characterSpacing);
+    if (cmd.hasKwSubParameter("fc")) {
+      canvas.setFillColor(WebColors.getRGBColor(cmd.getKwSubParameter("fc").getAsString()));
+    }
+    canvas.setHorizontalScaling(horizontalScaling);
+    canvas.setTextRenderingMode(textRenderingMode);
+    canvas.setTextRise(textRise);
+    canvas.setWordSpacing(wordSpacing);
+
+    canvas.setFontAndSize(fonts.get(tempFontFilename), tempFontSize);
+
+    float baseline = arr[1] + arr[3] - tempFontSize;
+    for (String line : lines) {
+      final float lineWidth = widths.getWidth(line, tempFontSize, characterSpacing, horizontalScaling);
+      float lineX = arr[0];
+      switch (alignment) {
+        case "l": {
+          break;
+        }
+        case "c": {
+          lineX += (arr[2] - lineWidth) / 2;
+          break;
+        }
+        case "r": {
+          lineX += arr[2] - lineWidth;
+          break;
+        }
+        default: {
+          throw new IllegalArgumentException("Invalid alignment");
+        }
+      }
+      canvas.setTextMatrix(lineX, baseline);
+      canvas.showText(line);
+      baseline -= tempLeading;
     }
 
     canvas.restoreState();
@@ -508,9 +842,21 @@ public class StampPdf {
   @SuppressWarnings("checkstyle:MethodLength")
   private void pass2(final PdfDocument doc) throws IOException {
 
-    for (int pageNum = 0; pageNum < numPages; pageNum++) {
+    final BitSet touched = new BitSet();
+    for (Group tempGroup : groups) {
+      touched.or(tempGroup.pages);
+    }
+
+    for (int pageNum = touched.nextSetBit(0); pageNum >= 0; pageNum = touched.nextSetBit(pageNum + 1)) {
 
-      if (!cmds.get(pageNum).isEmpty()) {
+      cmds.clear();
+      for (Group tempGroup : groups) {
+        if (tempGroup.pages.get(pageNum)) {
+          cmds.addAll(tempGroup.cmds);
+        }
+      }
+
+      if (!cmds.isEmpty()) {
 
         final PdfPage page = doc.getPage(pageNum + 1);
         pageWidth = page.getPageSize().getWidth();
@@ -520,14 +866,13 @@ public class StampPdf {
         canvas.saveState();
 
         fonts.clear();
-        fonts.put(DEFAULT_FONT_FILENAME, PdfFontFactory.createFont(DEFAULT_FONT_FILENAME, PdfEncodings.IDENTITY_H, true));
-        for (String name : fontPrograms.keySet()) {
-          if (!fonts.containsKey(name)) {
-            fonts.put(name, PdfFontFactory.createFont(name, PdfEncodings.IDENTITY_H, true));
+        try (Metrics.Timer timer = Metrics.start("StampPdf.font")) {
+          for (Map.Entry<String, FontProgram> entry : fontPrograms.entrySet()) {
+            fonts.put(entry.getKey(), PdfFontFactory.createFont(entry.getValue(), PdfEncodings.IDENTITY_H, true));
           }
         }
 
-        for (Parameter tempCmd : cmds.get(pageNum)) {
+        for (Parameter tempCmd : cmds) {
           cmd = tempCmd;
 
           switch (cmd.getOption().getName()) {
@@ -538,6 +883,11 @@ public class StampPdf {
               break;
             }
 
+            case "barcode": {
+              parseBarcode(doc, pageNum);
+              break;
+            }
+
             case "char-spacing": {
               characterSpacing = cmd.getSubParameter(0).getAsFloat();
               break;
@@ -597,7 +947,7 @@ public class StampPdf {
                   break;
                 }
                 default: {
-                  error("Invalid number of Bézier curve parameters");
+                  throw new IllegalArgumentException("Invalid number of Bézier curve parameters");
                 }
               }
               break;
@@ -694,7 +1044,7 @@ public class StampPdf {
             case "literal": {
               final SubParameter sub = cmd.getSubParameter(0);
               if (sub == null) {
-                error("Empty literal");
+                throw new IllegalArgumentException("Empty literal");
               }
               canvas.writeLiteral(sub.getAsString());
               break;
@@ -740,6 +1090,11 @@ public class StampPdf {
               break;
             }
 
+            case "text-box": {
+              parseTextBox(pageNum);
+              break;
+            }
+
             case "text-horizontal-scaling": {
               horizontalScaling = cmd.getSubParameter(0).getAsFloat();
               break;
@@ -751,7 +1106,7 @@ public class StampPdf {
               for (int i = 0; i < 6; i++) {
                 final SubParameter sub = cmd.getSubParameter(i);
                 if (sub == null) {
-                  error("Invalid text matrix");
+                  throw new IllegalArgumentException("Invalid text matrix");
                 }
                 if (i < 4) {
                   matrix[i] = sub.getAsFloat();
@@ -770,7 +1125,7 @@ public class StampPdf {
               final SubParameter subX = cmd.getSubParameter(0);
               final SubParameter subY = cmd.getSubParameter(1);
               if ((subX == null) || (subY == null)) {
-                error("Invalid text position");
+                throw new IllegalArgumentException("Invalid text position");
               }
               final float textX = adjustXFloat(subX);
               final float textY = adjustYFloat(subY);
@@ -808,6 +1163,101 @@ public class StampPdf {
     }
   }
 
+  /**
+   * Stamps a document.
+   *
+   * <p>The commands are applied to the pages of the document, which is
+   * left open, so that it can be processed further before closing.
+   * Only the pages selected for some command are visited; the other
+   * pages are neither read nor written, as the document is updated in
+   * append mode.
+   *
+   * @param doc the document
+   * @throws IOException on error
+   */
+  public void stamp(final PdfDocument doc) throws IOException {
+
+    numPages = doc.getNumberOfPages();
+    context = new DocumentContext(doc);
+    pageNums = new BitSet();
+    pageNums.set(0);
+
+    try (Metrics.Timer timer = Metrics.start("StampPdf.pass1")) {
+      pass1(doc);
+    }
+
+    try (Metrics.Timer timer = Metrics.start("StampPdf.pass2")) {
+      pass2(doc);
+    }
+  }
+
+  /**
+   * Stamps a document in memory.
+   *
+   * @param inputData the document
+   * @return the document with the stamps appended as an incremental
+   *         update
+   * @throws IOException on error
+   */
+  public byte[] stamp(final byte[] inputData) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(inputData.length + UPDATE_SIZE);
+    try (
+        PdfReader reader = new PdfReader(new ByteArrayInputStream(inputData));
+        PdfDocument doc = new PdfDocument(reader, new PdfWriter(out), new StampingProperties().useAppendMode())) {
+      stamp(doc);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Stamps the files listed in a data source.
+   *
+   * <p>Each row gives the input file (<code>input</code>), optionally
+   * the output file (<code>output</code>, default: the input file) and
+   * the values of variables used in text, which take precedence over
+   * those defined by <code>--value</code>.  The text templates are
+   * compiled once and shared by all rows.  Each file is read into
+   * memory and the stamped document written out outside the
+   * processing stage of the runner.
+   *
+   * @param par the parameters
+   * @return true if all files were processed successfully
+   * @throws Exception on error
+   */
+  private static boolean processBatch(final Parameters par) throws Exception {
+    final Manifest manifest = new Manifest(par.getDataFileName());
+    final Map<String, TextTemplate> templates = new ConcurrentHashMap<>();
+    final BatchRunner runner = new BatchRunner(par.getThreads(), 2 * par.getThreads());
+    int failed;
+    try {
+      int row = 0;
+      for (Map<String, String> entry : manifest.getEntries()) {
+        row++;
+        final String inFileName = entry.get("input");
+        final String outFileName = entry.getOrDefault("output", inFileName);
+        runner.submit((inFileName == null) ? ("data source entry " + row) : inFileName, () -> {
+          if (inFileName == null) {
+            throw new IOException("Input file missing in data source");
+          }
+          final byte[] inputData = Files.readAllBytes(Paths.get(inFileName));
+          Metrics.count(Metrics.BYTES_READ, inputData.length);
+          final byte[] outputData =
+              runner.compute(() -> new StampPdf(par, inFileName, entry, templates).stamp(inputData));
+          final AtomicFileOutputStream out = new AtomicFileOutputStream(outFileName);
+          try {
+            out.write(outputData);
+            out.commit();
+          } finally {
+            out.discard();
+          }
+        });
+      }
+    } finally {
+      failed = runner.finish();
+    }
+    return failed == 0;
+  }
+
   /**
    * Main method.
    *
@@ -817,6 +1267,36 @@ public class StampPdf {
     new StampPdf(args);
   }
 
+  /**
+   * Creates a stamper for use on an open document.
+   *
+   * @param par the parameters, the first file name is the name of the
+   *            input file
+   */
+  public StampPdf(final Parameters par) {
+    this.par = par;
+    pathname = par.getFileName(0);
+  }
+
+  /**
+   * Creates a stamper for one file of a batch.
+   *
+   * @param par       the parameters
+   * @param pathname  the name of the input file
+   * @param rowValues the values of variables given by the row
+   * @param templates the compiled text templates, shared by the batch
+   */
+  private StampPdf(
+      final Parameters par,
+      final String pathname,
+      final Map<String, String> rowValues,
+      final Map<String, TextTemplate> templates) {
+    this.par = par;
+    this.pathname = pathname;
+    this.rowValues = rowValues;
+    this.templates = templates;
+  }
+
   /**
    * Main constructor.
    *
@@ -827,31 +1307,39 @@ public class StampPdf {
 
     par = new Parameters(args);
 
-    byte[] inputData = null;
-    String outFileName = null;
-
-    try {
-      inputData = Files.readAllBytes(Paths.get(par.getFileName(0)));
-      outFileName = par.getFileName(par.numberFileNames() - 1);
-    } catch (final IOException exception) {
-      error("Error opening files, exception: " + exception.getMessage());
+    if (par.getDataFileName() != null) {
+      try {
+        if (!processBatch(par)) {
+          log.fine("Batch processing failed");
+          System.exit(1);
+        }
+      } catch (final Exception exception) {
+        error("Error processing batch, exception: " + exception.getMessage());
+      }
+      log.fine("Application terminated normally");
+      return;
     }
 
+    final String inFileName = par.getFileName(0);
+    final String outFileName = par.getFileName(par.numberFileNames() - 1);
+    pathname = inFileName;
+
     try (
-        PdfReader reader = new PdfReader(new ByteArrayInputStream(inputData));
-        PdfWriter writer = new PdfWriter(new FileOutputStream(outFileName));
-        PdfDocument doc = new PdfDocument(reader, writer, new StampingProperties().useAppendMode())) {
-
-      numPages = doc.getNumberOfPages();
-      pageNums = new boolean[numPages];
-      pageNums[0] = true;
-      for (int pageNum = 0; pageNum < numPages; pageNum++) {
-        cmds.add(new ArrayList<Parameter>());
-      }
+        PdfReader reader = new PdfReader(inFileName);
+        IncrementalOutputStream out = new IncrementalOutputStream(reader, inFileName, outFileName);
+        PdfDocument doc = new PdfDocument(reader, new PdfWriter(out), new StampingProperties().useAppendMode())) {
 
-      pass1(doc);
+      Metrics.countFile(Metrics.BYTES_READ, inFileName);
 
-      pass2(doc);
+      try {
+        stamp(doc);
+        try (Metrics.Timer timer = Metrics.start("StampPdf.write")) {
+          doc.close();
+        }
+      } catch (final IOException | RuntimeException exception) {
+        out.discard();
+        throw exception;
+      }
 
     } catch (final FileNotFoundException exception) {
       error("File not found, exception: " + exception.getMessage());
@@ -862,6 +1350,9 @@ public class StampPdf {
     } catch (final NumberFormatException exception) {
       error("Invalid number format: " + exception.getMessage());
 
+    } catch (final IllegalArgumentException exception) {
+      error(exception.getMessage());
+
     } catch (final PdfException exception) {
       error("Error during PDF operation: " + exception.getMessage());
 
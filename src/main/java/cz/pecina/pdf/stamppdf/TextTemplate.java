@@ -0,0 +1,361 @@
+/* TextTemplate.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+package cz.pecina.pdf.stamppdf;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled text template.
+ *
+ * <p>The text is parsed once into lines, separated by <code>^</code>,
+ * each consisting of literal and variable segments, so that rendering
+ * it on a page only appends the segments to a reused buffer.  The
+ * template is immutable and can be shared by documents stamped
+ * concurrently, each with its own buffer.  The variables are:
+ *
+ * <ul>
+ * <li><code>{page}</code>, <code>{pages}</code> - the page number and
+ * the number of pages, optionally followed by a format after a comma:
+ * <code>r</code> or <code>R</code> for roman numerals,
+ * <code>a</code> or <code>A</code> for letters (a to z, aa to zz, ...),
+ * or a number of digits for zero-padded decimal numbers,</li>
+ * <li><code>{pathname}</code>, <code>{filename}</code> - the name of the
+ * input file, with and without the path,</li>
+ * <li><code>{date}</code> - the current date, optionally followed by a
+ * <code>DateTimeFormatter</code> pattern after a comma,</li>
+ * <li><code>{meta,KEY}</code> - the entry of the document information
+ * dictionary, e.g., <code>{meta,Title}</code>,</li>
+ * <li><code>{NAME}</code> - any other name is a per-file value.</li>
+ * </ul>
+ *
+ * <p>A value that is not defined is rendered literally, including the
+ * braces, as is anything in braces that is not a variable, e.g.,
+ * <code>{ }</code>.  A brace not closed on the same line is a literal
+ * character.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class TextTemplate {
+
+  // static logger
+  private static final Logger log = Logger.getLogger(TextTemplate.class.getName());
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "TextTemplate";
+  }
+
+  /**
+   * Source of the values of variables.
+   */
+  public interface Context {
+
+    /**
+     * Gets the name of the input file.
+     *
+     * @return the name of the input file
+     */
+    String getPathname();
+
+    /**
+     * Gets an entry of the document information dictionary.
+     *
+     * @param key the key
+     * @return the value, or <code>null</code> if not present
+     */
+    String getMetadata(String key);
+
+    /**
+     * Gets a per-file value.
+     *
+     * @param name the name of the value
+     * @return the value, or <code>null</code> if not defined
+     */
+    String getValue(String name);
+  }
+
+  // kinds of segments
+  private enum Kind { LITERAL, PAGE, PAGES, PATHNAME, FILENAME, DATE, META, VALUE }
+
+  // number formats
+  private static final char ROMAN_LOWER = 'r';
+  private static final char ROMAN_UPPER = 'R';
+  private static final char LETTERS_LOWER = 'a';
+  private static final char LETTERS_UPPER = 'A';
+
+  // roman numerals
+  private static final int MAX_ROMAN = 3999;
+  private static final int[] ROMAN_VALUES = {1000, 900, 500, 400, 100, 90, 50, 40, 10, 9, 5, 4, 1};
+  private static final String[] ROMAN_DIGITS = {"M", "CM", "D", "CD", "C", "XC", "L", "XL", "X", "IX", "V", "IV", "I"};
+
+  // letters
+  private static final int NUMBER_LETTERS = 26;
+
+  // name of a value
+  private static final Pattern VALUE_NAME = Pattern.compile("[^\\s,{}]+");
+
+  // segment of a line
+  private static final class Segment {
+    private final Kind kind;
+    private final String text;
+    private final char format;
+    private final int width;
+    private final DateTimeFormatter formatter;
+
+    // creates a segment
+    private Segment(final Kind kind, final String text, final char format, final int width) {
+      this.kind = kind;
+      this.text = text;
+      this.format = format;
+      this.width = width;
+      formatter = null;
+    }
+
+    // creates a date segment
+    private Segment(final DateTimeFormatter formatter) {
+      kind = Kind.DATE;
+      text = null;
+      format = ' ';
+      width = 0;
+      this.formatter = formatter;
+    }
+  }
+
+  // lines of segments
+  private final List<List<Segment>> lines = new ArrayList<>();
+
+  /**
+   * Compiles a template.
+   *
+   * @param template the template
+   * @throws IllegalArgumentException on invalid variable format
+   */
+  public TextTemplate(final String template) {
+    for (String line : template.split("\\^", -1)) {
+      lines.add(compileLine(line));
+    }
+    log.fine("Template compiled, lines: " + lines.size());
+  }
+
+  // compiles one line
+  private static List<Segment> compileLine(final String line) {
+    final List<Segment> segments = new ArrayList<>();
+    final StringBuilder literal = new StringBuilder();
+    int position = 0;
+    while (position < line.length()) {
+      final int open = line.indexOf('{', position);
+      final int end = (open < 0) ? -1 : line.indexOf('}', open);
+      if (end < 0) {
+        literal.append(line, position, line.length());
+        break;
+      }
+      final int begin = line.lastIndexOf('{', end);
+      literal.append(line, position, begin);
+      final Segment segment = compileVariable(line.substring(begin + 1, end));
+      if (segment.kind == Kind.LITERAL) {
+        literal.append(segment.text);
+      } else {
+        if (literal.length() > 0) {
+          segments.add(new Segment(Kind.LITERAL, literal.toString(), ' ', 0));
+          literal.setLength(0);
+        }
+        segments.add(segment);
+      }
+      position = end + 1;
+    }
+    if (literal.length() > 0) {
+      segments.add(new Segment(Kind.LITERAL, literal.toString(), ' ', 0));
+    }
+    return segments;
+  }
+
+  // compiles a variable
+  private static Segment compileVariable(final String variable) {
+    final String[] parts = variable.split(",", 2);
+    final String name = parts[0].trim();
+    final String argument = (parts.length > 1) ? parts[1] : null;
+    switch (name) {
+      case "page":
+      case "pages": {
+        final Kind kind = name.equals("page") ? Kind.PAGE : Kind.PAGES;
+        if ((argument == null) || argument.isEmpty()) {
+          return new Segment(kind, null, ' ', 0);
+        }
+        final char format = argument.charAt(0);
+        if ((argument.length() == 1)
+            && ((format == ROMAN_LOWER) || (format == ROMAN_UPPER)
+                || (format == LETTERS_LOWER) || (format == LETTERS_UPPER))) {
+          return new Segment(kind, null, format, 0);
+        }
+        try {
+          return new Segment(kind, null, ' ', Integer.parseInt(argument));
+        } catch (final NumberFormatException exception) {
+          throw new IllegalArgumentException("Invalid page number format: " + argument);
+        }
+      }
+      case "pathname": {
+        return new Segment(Kind.PATHNAME, null, ' ', 0);
+      }
+      case "filename": {
+        return new Segment(Kind.FILENAME, null, ' ', 0);
+      }
+      case "date": {
+        return new Segment((argument == null)
+            ? DateTimeFormatter.ISO_LOCAL_DATE : DateTimeFormatter.ofPattern(argument));
+      }
+      case "meta": {
+        if (argument == null) {
+          throw new IllegalArgumentException("Missing metadata key");
+        }
+        return new Segment(Kind.META, argument, ' ', 0);
+      }
+      default: {
+        if (VALUE_NAME.matcher(variable).matches()) {
+          return new Segment(Kind.VALUE, name, ' ', 0);
+        }
+        return new Segment(Kind.LITERAL, '{' + variable + '}', ' ', 0);
+      }
+    }
+  }
+
+  /**
+   * Gets the number of lines.
+   *
+   * @return the number of lines
+   */
+  public int getNumberLines() {
+    return lines.size();
+  }
+
+  /**
+   * Renders a line.
+   *
+   * @param buffer  the buffer, reused for rendering
+   * @param line    the index of the line
+   * @param page    the page number, 1-based
+   * @param pages   the number of pages
+   * @param context the source of values
+   * @return the rendered line
+   */
+  public String render(
+      final StringBuilder buffer,
+      final int line,
+      final int page,
+      final int pages,
+      final Context context) {
+    buffer.setLength(0);
+    for (Segment segment : lines.get(line)) {
+      switch (segment.kind) {
+        case LITERAL: {
+          buffer.append(segment.text);
+          break;
+        }
+        case PAGE: {
+          appendNumber(buffer, page, segment);
+          break;
+        }
+        case PAGES: {
+          appendNumber(buffer, pages, segment);
+          break;
+        }
+        case PATHNAME: {
+          buffer.append(context.getPathname());
+          break;
+        }
+        case FILENAME: {
+          final String pathname = context.getPathname();
+          buffer.append(pathname, pathname.lastIndexOf('/') + 1, pathname.length());
+          break;
+        }
+        case DATE: {
+          segment.formatter.formatTo(ZonedDateTime.now(), buffer);
+          break;
+        }
+        case META: {
+          final String value = context.getMetadata(segment.text);
+          if (value != null) {
+            buffer.append(value);
+          }
+          break;
+        }
+        default: {
+          final String value = context.getValue(segment.text);
+          if (value == null) {
+            buffer.append('{').append(segment.text).append('}');
+          } else {
+            buffer.append(value);
+          }
+        }
+      }
+    }
+    return buffer.toString();
+  }
+
+  // appends a formatted number
+  private static void appendNumber(final StringBuilder buffer, final int number, final Segment segment) {
+    switch (segment.format) {
+      case ROMAN_LOWER:
+      case ROMAN_UPPER: {
+        if ((number < 1) || (number > MAX_ROMAN)) {
+          buffer.append(number);
+          break;
+        }
+        final int start = buffer.length();
+        int rest = number;
+        for (int i = 0; i < ROMAN_VALUES.length; i++) {
+          for (; rest >= ROMAN_VALUES[i]; rest -= ROMAN_VALUES[i]) {
+            buffer.append(ROMAN_DIGITS[i]);
+          }
+        }
+        if (segment.format == ROMAN_LOWER) {
+          for (int i = start; i < buffer.length(); i++) {
+            buffer.setCharAt(i, Character.toLowerCase(buffer.charAt(i)));
+          }
+        }
+        break;
+      }
+      case LETTERS_LOWER:
+      case LETTERS_UPPER: {
+        final char letter = (char) (segment.format + ((number - 1) % NUMBER_LETTERS));
+        for (int i = (number - 1) / NUMBER_LETTERS; i >= 0; i--) {
+          buffer.append(letter);
+        }
+        break;
+      }
+      default: {
+        final String digits = Integer.toString(number);
+        for (int i = digits.length(); i < segment.width; i++) {
+          buffer.append('0');
+        }
+        buffer.append(digits);
+      }
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/* AtomicFileOutputStream.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+package cz.pecina.pdf.util;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+
+/**
+ * Output stream replacing a file atomically.
+ *
+ * <p>The data are written to a temporary file in the directory of the
+ * target file, which is moved over the target file by {@link #commit}.
+ * Until then, the target file, which may also be the input file being
+ * read, is left untouched, and readers never see it incomplete.  If the
+ * output is abandoned, {@link #discard} removes the temporary file.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class AtomicFileOutputStream extends FilterOutputStream {
+
+  // static logger
+  private static final Logger log = Logger.getLogger(AtomicFileOutputStream.class.getName());
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "AtomicFileOutputStream";
+  }
+
+  // size of the output buffer
+  private static final int BUFFER_SIZE = 0x10000;
+
+  // target file
+  private final Path target;
+
+  // temporary file
+  private final Path temporary;
+
+  // true if the stream has been closed
+  private boolean closed;
+
+  // true if the target file has been replaced
+  private boolean committed;
+
+  // number of bytes written
+  private long written;
+
+  /**
+   * Creates the temporary file for the target file.
+   *
+   * @param fileName the target file name
+   * @throws IOException on error
+   */
+  public AtomicFileOutputStream(final String fileName) throws IOException {
+    this(Paths.get(fileName).toAbsolutePath());
+  }
+
+  // chooses the temporary file
+  private AtomicFileOutputStream(final Path target) throws IOException {
+    this(target, target.resolveSibling(
+        String.format(".%s.%016x.tmp", target.getFileName(), ThreadLocalRandom.current().nextLong())));
+  }
+
+  // creates the temporary file
+  private AtomicFileOutputStream(final Path target, final Path temporary) throws IOException {
+    super(new BufferedOutputStream(
+        Files.newOutputStream(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), BUFFER_SIZE));
+    this.target = target;
+    this.temporary = temporary;
+    if (Files.exists(target)) {
+      try {
+        Files.setPosixFilePermissions(temporary, Files.getPosixFilePermissions(target));
+      } catch (final UnsupportedOperationException exception) {
+        log.fine("File permissions not supported");
+      }
+    }
+    log.fine("Temporary file created: " + temporary);
+  }
+
+  // for description see OutputStream
+  @Override
+  public void write(final int b) throws IOException {
+    out.write(b);
+    written++;
+  }
+
+  // for description see OutputStream
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    out.write(b, off, len);
+    written += len;
+  }
+
+  // for description see OutputStream
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      super.close();
+    }
+  }
+
+  /**
+   * Closes the stream and replaces the target file with the temporary
+   * file.
+   *
+   * @throws IOException on error
+   */
+  public void commit() throws IOException {
+    close();
+    try {
+      Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (final AtomicMoveNotSupportedException exception) {
+      Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+    committed = true;
+    Metrics.count(Metrics.BYTES_WRITTEN, written);
+    log.fine("Target file replaced: " + target);
+  }
+
+  /**
+   * Closes the stream and deletes the temporary file, unless the output
+   * has been committed.
+   */
+  public void discard() {
+    if (!committed) {
+      try {
+        close();
+      } catch (final IOException exception) {
+        log.fine("Failed to close temporary file, exception: " + exception);
+      }
+      try {
+        Files.deleteIfExists(temporary);
+      } catch (final IOException exception) {
+        log.fine("Failed to delete temporary file, exception: " + exception);
+      }
+    }
+  }
+}
@@ -0,0 +1,283 @@
+/* BatchRunner.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+package cz.pecina.pdf.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Runner of batch jobs.
+ *
+ * <p>Each job is run on its own virtual thread, so that jobs waiting for
+ * I/O, e.g., reading inputs from a network file system or writing
+ * outputs, do not hold a platform thread.  The part of a job that keeps
+ * a processor busy, i.e., parsing and producing a document, is run
+ * through {@link #process} or {@link #compute}, which admit only as
+ * many jobs at a time as there are permits; the rest of a job is not
+ * limited.  The time spent waiting for a permit and in the processing
+ * stage is recorded as metrics.  The number of jobs submitted but not
+ * yet finished is limited as well, so that a long batch does not fill
+ * the memory with pending jobs nor exhaust file descriptors.  The
+ * result and the duration of each job are reported on standard output,
+ * failures on standard error; a failed job does not abort the batch.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class BatchRunner {
+
+  // static logger
+  private static final Logger log = Logger.getLogger(BatchRunner.class.getName());
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "BatchRunner";
+  }
+
+  // conversion factor
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  /**
+   * Batch job.
+   */
+  @FunctionalInterface
+  public interface Job {
+
+    /**
+     * Runs the job.
+     *
+     * @throws Exception on error
+     */
+    void run() throws Exception;
+  }
+
+  // minimum number of pending jobs
+  private static final int MIN_PENDING = 256;
+
+  // executor starting a virtual thread per job
+  private final ExecutorService executor =
+      Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("batch-", 0).factory());
+
+  // permits for pending jobs
+  private final Semaphore pending;
+
+  // permits for the processing stage
+  private final Semaphore permits;
+
+  // counters
+  private final AtomicInteger submitted = new AtomicInteger();
+  private final AtomicInteger started = new AtomicInteger();
+  private final AtomicInteger succeeded = new AtomicInteger();
+  private final AtomicInteger failed = new AtomicInteger();
+  private final AtomicInteger waiting = new AtomicInteger();
+  private final AtomicInteger processing = new AtomicInteger();
+
+  // start time
+  private final long startTime = System.nanoTime();
+
+  /**
+   * Creates a runner.
+   *
+   * @param threads the number of jobs admitted to the processing stage
+   *                at a time, usually the number of processors
+   */
+  public BatchRunner(final int threads) {
+    this(threads, Math.max(MIN_PENDING, 2 * threads));
+  }
+
+  /**
+   * Creates a runner with a given limit of pending jobs.
+   *
+   * <p>Jobs that keep whole documents in memory while waiting for the
+   * processing stage should be limited to a small multiple of the
+   * number of threads.
+   *
+   * @param threads the number of jobs admitted to the processing stage
+   *                at a time, usually the number of processors
+   * @param limit   the number of jobs submitted but not yet finished
+   */
+  public BatchRunner(final int threads, final int limit) {
+    permits = new Semaphore(threads);
+    pending = new Semaphore(limit);
+  }
+
+  /**
+   * Submits a job, waiting if too many jobs are pending.
+   *
+   * @param name the name of the job, used in reports
+   * @param job  the job
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public void submit(final String name, final Job job) throws InterruptedException {
+    pending.acquire();
+    submitted.incrementAndGet();
+    executor.execute(() -> {
+      started.incrementAndGet();
+      final long jobStartTime = System.nanoTime();
+      try (Metrics.Timer timer = Metrics.start("BatchRunner.job")) {
+        job.run();
+        succeeded.incrementAndGet();
+        System.out.printf("%s: OK, %.3f s%n", name, (System.nanoTime() - jobStartTime) / NANOS_PER_SECOND);
+        log.fine("Job succeeded: " + name);
+      } catch (final Exception exception) {
+        failed.incrementAndGet();
+        System.err.printf("%s: FAILED, %.3f s, exception: %s%n",
+            name, (System.nanoTime() - jobStartTime) / NANOS_PER_SECOND, exception);
+        log.fine("Job failed: " + name + ", exception: " + exception);
+      } finally {
+        pending.release();
+      }
+    });
+  }
+
+  /**
+   * Runs the processing stage of a job, waiting for a permit.
+   *
+   * @param <T>  the type of the result
+   * @param task the processing stage
+   * @return the result of the processing stage
+   * @throws Exception on error, or if interrupted while waiting
+   */
+  public <T> T compute(final Callable<T> task) throws Exception {
+    waiting.incrementAndGet();
+    try (Metrics.Timer timer = Metrics.start("BatchRunner.wait")) {
+      permits.acquire();
+    } finally {
+      waiting.decrementAndGet();
+    }
+    processing.incrementAndGet();
+    try (Metrics.Timer timer = Metrics.start("BatchRunner.process")) {
+      return task.call();
+    } finally {
+      processing.decrementAndGet();
+      permits.release();
+    }
+  }
+
+  /**
+   * Runs the processing stage of a job, waiting for a permit.
+   *
+   * @param job the processing stage
+   * @throws Exception on error, or if interrupted while waiting
+   */
+  public void process(final Job job) throws Exception {
+    compute(() -> {
+      job.run();
+      return null;
+    });
+  }
+
+  /**
+   * Waits for all jobs to finish and prints a summary.
+   *
+   * @return the number of failed jobs
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public int finish() throws InterruptedException {
+    executor.shutdown();
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    System.out.printf("Processed %d file(s), %d failed, in %.3f s%n",
+        succeeded.get() + failed.get(), failed.get(), (System.nanoTime() - startTime) / NANOS_PER_SECOND);
+    return failed.get();
+  }
+
+  /**
+   * Gets the number of jobs submitted but not yet started.
+   *
+   * @return the number of queued jobs
+   */
+  public int getQueued() {
+    return submitted.get() - started.get();
+  }
+
+  /**
+   * Gets the number of jobs being run.
+   *
+   * @return the number of running jobs
+   */
+  public int getRunning() {
+    return started.get() - succeeded.get() - failed.get();
+  }
+
+  /**
+   * Gets the number of jobs waiting for the processing stage.
+   *
+   * @return the number of waiting jobs
+   */
+  public int getWaiting() {
+    return waiting.get();
+  }
+
+  /**
+   * Gets the number of jobs in the processing stage.
+   *
+   * @return the number of processing jobs
+   */
+  public int getProcessing() {
+    return processing.get();
+  }
+
+  /**
+   * Gets the number of jobs succeeded so far.
+   *
+   * @return the number of succeeded jobs
+   */
+  public int getSucceeded() {
+    return succeeded.get();
+  }
+
+  /**
+   * Gets the number of jobs failed so far.
+   *
+   * @return the number of failed jobs
+   */
+  public int getFailed() {
+    return failed.get();
+  }
+
+  /**
+   * Gets the throughput.
+   *
+   * @return the number of jobs finished per second since the runner was created
+   */
+  public double getThroughput() {
+    return (succeeded.get() + failed.get()) * NANOS_PER_SECOND / (System.nanoTime() - startTime);
+  }
+
+  /**
+   * Gets the current state of the runner as a string.
+   *
+   * @return a line with the counters and the throughput
+   */
+  public String getStatus() {
+    return String.format(
+        "queued %d, running %d (waiting %d, processing %d), succeeded %d, failed %d, %.2f file(s)/s",
+        getQueued(), getRunning(), getWaiting(), getProcessing(), getSucceeded(), getFailed(), getThroughput());
+  }
+}
@@ -0,0 +1,72 @@
+/* CounterEvent.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+
+package cz.pecina.pdf.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event recording an increment of a counter.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+@Name("cz.pecina.pdf.Counter")
+@Label("Counter")
+@Category("PDF")
+@Description("Increment of a counter maintained by Metrics")
+public class CounterEvent extends Event {
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "CounterEvent";
+  }
+
+  /**
+   * Name of the counter.
+   */
+  @Label("Counter")
+  String counter;
+
+  /**
+   * Increment.
+   */
+  @Label("Increment")
+  long increment;
+
+  /**
+   * Creates an event.
+   *
+   * @param counter   the name of the counter
+   * @param increment the increment
+   */
+  public CounterEvent(final String counter, final long increment) {
+    this.counter = counter;
+    this.increment = increment;
+  }
+}
@@ -0,0 +1,174 @@
+/* IncrementalOutputStream.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+package cz.pecina.pdf.util;
+
+import com.itextpdf.kernel.pdf.PdfReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+/**
+ * Output stream for incremental updates of existing PDF files.
+ *
+ * <p>In append mode, PdfDocument first copies the original document to
+ * the output and only then writes the update.  This stream prevents the
+ * original bytes from being written again: the output file is created as
+ * a copy of the input file by channel transfer (or left as it is if it is
+ * the input file itself) and the copy produced by PdfDocument is
+ * discarded, so that only the update is appended to the file.  If the
+ * update is abandoned, {@link #discard} makes the stream drop it and
+ * restore the original length of the file on closing, or at once if
+ * the stream has already been closed, as PdfDocument closes its writer,
+ * and with it this stream, even if closing the document fails.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class IncrementalOutputStream extends OutputStream {
+
+  // static logger
+  private static final Logger log = Logger.getLogger(IncrementalOutputStream.class.getName());
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "IncrementalOutputStream";
+  }
+
+  // output file
+  private final Path outPath;
+
+  // output channel
+  private final FileChannel channel;
+
+  // length of the input file
+  private final long inputLength;
+
+  // number of bytes yet to be discarded
+  private long skip;
+
+  // true if the update is abandoned
+  private boolean discarded;
+
+  // number of bytes written
+  private long written;
+
+  /**
+   * Opens the output file for an incremental update.
+   *
+   * @param reader      the reader the document is read from, opened on the input file
+   * @param inFileName  the input file name
+   * @param outFileName the output file name, may be the same as the input file name
+   * @throws IOException on error
+   */
+  public IncrementalOutputStream(final PdfReader reader, final String inFileName, final String outFileName)
+      throws IOException {
+    final Path inPath = Paths.get(inFileName);
+    outPath = Paths.get(outFileName);
+    inputLength = Files.size(inPath);
+    skip = inputLength;
+    if (reader.getFileLength() != skip) {
+      throw new IOException("Input file cannot be updated incrementally");
+    }
+    if (Files.exists(outPath) && Files.isSameFile(inPath, outPath)) {
+      channel = FileChannel.open(outPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+      log.fine("Updating file in place");
+    } else {
+      channel = FileChannel.open(
+          outPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      try (FileChannel inChannel = FileChannel.open(inPath, StandardOpenOption.READ)) {
+        long position = 0;
+        while (position < skip) {
+          position += inChannel.transferTo(position, skip - position, channel);
+        }
+      }
+      channel.position(skip);
+      written = skip;
+      log.fine("Input file copied");
+    }
+  }
+
+  // for description see OutputStream
+  @Override
+  public void write(final int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  // for description see OutputStream
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    if (discarded) {
+      return;
+    }
+    int offset = off;
+    int length = len;
+    if (skip > 0) {
+      final int skipped = (int) Math.min(skip, length);
+      skip -= skipped;
+      offset += skipped;
+      length -= skipped;
+    }
+    final ByteBuffer buffer = ByteBuffer.wrap(b, offset, length);
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    written += length;
+  }
+
+  /**
+   * Abandons the update.
+   *
+   * @throws IOException on error
+   */
+  public void discard() throws IOException {
+    if (discarded) {
+      return;
+    }
+    discarded = true;
+    if (!channel.isOpen()) {
+      try (FileChannel outChannel = FileChannel.open(outPath, StandardOpenOption.WRITE)) {
+        outChannel.truncate(inputLength);
+      }
+    }
+    log.fine("Update discarded");
+  }
+
+  // for description see OutputStream
+  @Override
+  public void close() throws IOException {
+    if (channel.isOpen()) {
+      if (discarded) {
+        channel.truncate(inputLength);
+      } else {
+        Metrics.count(Metrics.BYTES_WRITTEN, written);
+      }
+    }
+    channel.close();
+  }
+}
@@ -0,0 +1,311 @@
+/* Manifest.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+package cz.pecina.pdf.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Batch manifest.
+ *
+ * <p>A manifest is a list of entries, each of them a map of named
+ * values, typically describing one file to be processed.  Two formats
+ * are supported: JSONL (files with the extension <code>.jsonl</code> or
+ * <code>.json</code>), where each non-empty line is a flat JSON object,
+ * and CSV (all other files), where the first record is a header with
+ * the names of the columns.  Empty CSV fields and JSON null values are
+ * treated as missing.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class Manifest {
+
+  // static logger
+  private static final Logger log = Logger.getLogger(Manifest.class.getName());
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "Manifest";
+  }
+
+  // entries
+  private final List<Map<String, String>> entries = new ArrayList<>();
+
+  /**
+   * Reads a manifest from a file.
+   *
+   * @param fileName the file name
+   * @throws IOException on error
+   */
+  public Manifest(final String fileName) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(Paths.get(fileName), StandardCharsets.UTF_8)) {
+      final String lowerCaseFileName = fileName.toLowerCase();
+      if (lowerCaseFileName.endsWith(".jsonl") || lowerCaseFileName.endsWith(".json")) {
+        readJson(reader);
+      } else {
+        readCsv(reader);
+      }
+    }
+    log.fine("Manifest read, entries: " + entries.size());
+  }
+
+  /**
+   * Gets the entries.
+   *
+   * @return the list of entries, in the order of the manifest
+   */
+  public List<Map<String, String>> getEntries() {
+    return entries;
+  }
+
+  // reads a CSV manifest
+  private void readCsv(final BufferedReader reader) throws IOException {
+    final List<String> header = readCsvRecord(reader);
+    if (header == null) {
+      return;
+    }
+    for (List<String> record = readCsvRecord(reader); record != null; record = readCsvRecord(reader)) {
+      if ((record.size() == 1) && record.get(0).isEmpty()) {
+        continue;
+      }
+      if (record.size() > header.size()) {
+        throw new IOException("Too many fields in CSV record " + (entries.size() + 1));
+      }
+      final Map<String, String> entry = new LinkedHashMap<>();
+      for (int i = 0; i < record.size(); i++) {
+        if (!record.get(i).isEmpty()) {
+          entry.put(header.get(i), record.get(i));
+        }
+      }
+      entries.add(entry);
+    }
+  }
+
+  // reads one CSV record, returns null at the end of file
+  private static List<String> readCsvRecord(final BufferedReader reader) throws IOException {
+    int ch = reader.read();
+    if (ch == -1) {
+      return null;
+    }
+    final List<String> record = new ArrayList<>();
+    final StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    while (true) {
+      if (quoted) {
+        if (ch == -1) {
+          throw new IOException("Unterminated quoted field in CSV");
+        } else if (ch == '"') {
+          reader.mark(1);
+          if (reader.read() == '"') {
+            field.append('"');
+          } else {
+            reader.reset();
+            quoted = false;
+          }
+        } else {
+          field.append((char) ch);
+        }
+      } else if ((ch == -1) || (ch == '\n')) {
+        break;
+      } else if (ch == ',') {
+        record.add(field.toString());
+        field.setLength(0);
+      } else if (ch == '"') {
+        quoted = true;
+      } else if (ch != '\r') {
+        field.append((char) ch);
+      }
+      ch = reader.read();
+    }
+    record.add(field.toString());
+    return record;
+  }
+
+  // reads a JSONL manifest
+  private void readJson(final BufferedReader reader) throws IOException {
+    int lineNumber = 0;
+    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+      lineNumber++;
+      if (!line.trim().isEmpty()) {
+        entries.add(new JsonParser(line, lineNumber).parseObject());
+      }
+    }
+  }
+
+  // parser of flat JSON objects
+  private static final class JsonParser {
+
+    // the text
+    private final String text;
+
+    // line number, for error messages
+    private final int lineNumber;
+
+    // current position
+    private int position;
+
+    // creates the parser
+    private JsonParser(final String text, final int lineNumber) {
+      this.text = text;
+      this.lineNumber = lineNumber;
+    }
+
+    // reports a syntax error
+    private IOException error() {
+      return new IOException("JSON syntax error on line " + lineNumber + ", column " + (position + 1));
+    }
+
+    // skips whitespace and returns the next character, or -1 at the end
+    private int peek() {
+      while ((position < text.length()) && Character.isWhitespace(text.charAt(position))) {
+        position++;
+      }
+      return (position < text.length()) ? text.charAt(position) : -1;
+    }
+
+    // consumes the expected character
+    private void expect(final char ch) throws IOException {
+      if (peek() != ch) {
+        throw error();
+      }
+      position++;
+    }
+
+    // parses the object
+    private Map<String, String> parseObject() throws IOException {
+      final Map<String, String> entry = new LinkedHashMap<>();
+      expect('{');
+      if (peek() == '}') {
+        position++;
+      } else {
+        while (true) {
+          final String key = parseString();
+          expect(':');
+          final String value = parseValue();
+          if (value != null) {
+            entry.put(key, value);
+          }
+          if (peek() == ',') {
+            position++;
+          } else {
+            expect('}');
+            break;
+          }
+        }
+      }
+      if (peek() != -1) {
+        throw error();
+      }
+      return entry;
+    }
+
+    // parses a scalar value, null is returned as null
+    private String parseValue() throws IOException {
+      if (peek() == '"') {
+        return parseString();
+      }
+      final int start = position;
+      while ((position < text.length()) && (",}".indexOf(text.charAt(position)) < 0)
+          && !Character.isWhitespace(text.charAt(position))) {
+        position++;
+      }
+      final String value = text.substring(start, position);
+      if (value.equals("null")) {
+        return null;
+      }
+      if (value.equals("true") || value.equals("false") || value.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) {
+        return value;
+      }
+      position = start;
+      throw error();
+    }
+
+    // parses a string
+    private String parseString() throws IOException {
+      expect('"');
+      final StringBuilder value = new StringBuilder();
+      while (true) {
+        if (position >= text.length()) {
+          throw error();
+        }
+        final char ch = text.charAt(position++);
+        if (ch == '"') {
+          return value.toString();
+        }
+        if (ch != '\\') {
+          value.append(ch);
+          continue;
+        }
+        if (position >= text.length()) {
+          throw error();
+        }
+        final char escaped = text.charAt(position++);
+        switch (escaped) {
+          case 'b':
+            value.append('\b');
+            break;
+          case 'f':
+            value.append('\f');
+            break;
+          case 'n':
+            value.append('\n');
+            break;
+          case 'r':
+            value.append('\r');
+            break;
+          case 't':
+            value.append('\t');
+            break;
+          case 'u':
+            if ((position + 4) > text.length()) {
+              throw error();
+            }
+            try {
+              value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+            } catch (final NumberFormatException exception) {
+              throw error();
+            }
+            position += 4;
+            break;
+          case '"':
+          case '\\':
+          case '/':
+            value.append(escaped);
+            break;
+          default:
+            throw error();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,271 @@
+/* Metrics.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+
+package cz.pecina.pdf.util;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Metrics of processing.
+ *
+ * <p>The applications time their phases and count the bytes read and
+ * written through this class.  Every phase is also recorded as a
+ * {@link PhaseEvent} and every increment of a counter as a {@link
+ * CounterEvent}, so that a run can be profiled with Flight Recorder.
+ * If metrics are enabled, typically by the <code>--metrics</code>
+ * option, the totals are collected as well and written as a JSON
+ * summary when the application exits, by whatever path.  If neither is
+ * the case, timing a phase costs one check and no allocation.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public final class Metrics {
+
+  // static logger
+  private static final Logger log = Logger.getLogger(Metrics.class.getName());
+
+  // for description see Object
+  @Override
+  public String toString() {
+    return "Metrics";
+  }
+
+  // conversion factor
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  /**
+   * Name of the counter of bytes read.
+   */
+  public static final String BYTES_READ = "bytes.read";
+
+  /**
+   * Name of the counter of bytes written.
+   */
+  public static final String BYTES_WRITTEN = "bytes.written";
+
+  /**
+   * Timer of a phase, stopped when closed.
+   */
+  @FunctionalInterface
+  public interface Timer extends AutoCloseable {
+
+    /**
+     * Stops the timer.
+     */
+    @Override
+    void close();
+  }
+
+  // timer doing nothing
+  private static final Timer NO_TIMER = () -> { };
+
+  // events used to check whether events are recorded
+  private static final PhaseEvent PROBE = new PhaseEvent(null);
+  private static final CounterEvent COUNTER_PROBE = new CounterEvent(null, 0L);
+
+  // name of the application, null if metrics are not enabled
+  private static volatile String application;
+
+  // start time
+  private static final long START_TIME = System.nanoTime();
+
+  // statistics of a phase
+  private static final class Phase {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    // adds a duration
+    private void add(final long duration) {
+      count.increment();
+      total.add(duration);
+      max.accumulate(duration);
+    }
+  }
+
+  // statistics of phases
+  private static final Map<String, Phase> PHASES = new ConcurrentHashMap<>();
+
+  // counters
+  private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+
+  // timer of a phase
+  private static final class PhaseTimer implements Timer {
+    private final String phase;
+    private final PhaseEvent event;
+    private final long start = System.nanoTime();
+
+    // starts the timer
+    private PhaseTimer(final String phase) {
+      this.phase = phase;
+      event = new PhaseEvent(phase);
+      event.begin();
+    }
+
+    // for description see Timer
+    @Override
+    public void close() {
+      final long duration = System.nanoTime() - start;
+      if (application != null) {
+        PHASES.computeIfAbsent(phase, key -> new Phase()).add(duration);
+      }
+      event.end();
+      if (event.shouldCommit()) {
+        event.commit();
+      }
+    }
+  }
+
+  // prevents instantiation
+  private Metrics() {
+  }
+
+  /**
+   * Enables collecting metrics and writing the summary on exit.
+   *
+   * @param applicationName the name of the application, included in the summary
+   * @param fileName        the file the summary is written to, <code>-</code> for standard error
+   */
+  public static void enable(final String applicationName, final String fileName) {
+    if (application != null) {
+      return;
+    }
+    application = applicationName;
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> write(fileName)));
+    log.fine("Metrics enabled");
+  }
+
+  /**
+   * Checks whether metrics are enabled.
+   *
+   * @return true if enabled
+   */
+  public static boolean isEnabled() {
+    return application != null;
+  }
+
+  /**
+   * Starts timing a phase.
+   *
+   * <p>The timer should be used in a try-with-resources statement.
+   *
+   * @param phase the name of the phase, by convention prefixed with the name of the class
+   * @return the timer
+   */
+  public static Timer start(final String phase) {
+    return ((application != null) || PROBE.isEnabled()) ? new PhaseTimer(phase) : NO_TIMER;
+  }
+
+  /**
+   * Increments a counter.
+   *
+   * @param counter   the name of the counter
+   * @param increment the increment
+   */
+  public static void count(final String counter, final long increment) {
+    if (application != null) {
+      COUNTERS.computeIfAbsent(counter, key -> new LongAdder()).add(increment);
+    }
+    if (COUNTER_PROBE.isEnabled()) {
+      final CounterEvent event = new CounterEvent(counter, increment);
+      if (event.shouldCommit()) {
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * Increments a counter by the size of a file, if the counter is
+   * collected.
+   *
+   * @param counter  the name of the counter
+   * @param fileName the file name
+   */
+  public static void countFile(final String counter, final String fileName) {
+    if ((application != null) || COUNTER_PROBE.isEnabled()) {
+      try {
+        count(counter, Files.size(Paths.get(fileName)));
+      } catch (final IOException exception) {
+        log.fine("Failed to get file size, exception: " + exception);
+      }
+    }
+  }
+
+  // quotes a string for JSON
+  private static String quote(final String string) {
+    return '"' + string.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+  }
+
+  /**
+   * Gets the summary of the metrics.
+   *
+   * @return the summary as a JSON object
+   */
+  public static String getSummary() {
+    final StringBuilder summary = new StringBuilder();
+    summary.append(String.format(Locale.ROOT, "{\n  \"application\": %s,\n  \"elapsed\": %.6f,\n  \"phases\": {",
+        quote(String.valueOf(application)), (System.nanoTime() - START_TIME) / NANOS_PER_SECOND));
+    String separator = "\n";
+    for (Map.Entry<String, Phase> entry : new TreeMap<>(PHASES).entrySet()) {
+      final Phase phase = entry.getValue();
+      summary.append(String.format(Locale.ROOT, "%s    %s: {\"count\": %d, \"total\": %.6f, \"max\": %.6f}",
+          separator, quote(entry.getKey()), phase.count.sum(),
+          phase.total.sum() / NANOS_PER_SECOND, phase.max.get() / NANOS_PER_SECOND));
+      separator = ",\n";
+    }
+    summary.append(PHASES.isEmpty() ? "},\n  \"counters\": {" : "\n  },\n  \"counters\": {");
+    separator = "\n";
+    for (Map.Entry<String, LongAdder> entry : new TreeMap<>(COUNTERS).entrySet()) {
+      summary.append(String.format("%s    %s: %d", separator, quote(entry.getKey()), entry.getValue().sum()));
+      separator = ",\n";
+    }
+    summary.append(COUNTERS.isEmpty() ? "}\n}\n" : "\n  }\n}\n");
+    return summary.toString();
+  }
+
+  // writes the summary
+  private static void write(final String fileName) {
+    final String summary = getSummary();
+    if (fileName.equals("-")) {
+      System.err.print(summary);
+    } else {
+      try (PrintStream stream = new PrintStream(fileName, "UTF-8")) {
+        stream.print(summary);
+      } catch (final IOException exception) {
+        System.err.println("Error writing metrics, exception: " + exception);
+        log.fine("Error writing metrics, exception: " + exception);
+      }
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/* TextTemplateTest.java
+ *
+ * Copyright (C) 2015-19, Tomas Pecina <tomas@pecina.cz>
+ *
+ * This file is part of cz.pecina.pdf, a suite of PDF processing applications.
+ *
+ * This application is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This application is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The source code is available from <https://github.com/tompecina/pdf>.
+ */
+
+package cz.pecina.pdf.stamppdf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Year;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Tests of TextTemplate.
+ *
+ * @author Tomáš Pecina
+ * @version 1.0.0
+ */
+public class TextTemplateTest {
+
+  // test context
+  private static final class TestContext implements TextTemplate.Context {
+    private final Map<String, String> values = new HashMap<>();
+    private final Map<String, String> metadata = new HashMap<>();
+
+    @Override
+    public String getPathname() {
+      return "dir/sub/file.pdf";
+    }
+
+    @Override
+    public String getMetadata(final String key) {
+      return metadata.get(key);
+    }
+
+    @Override
+    public String getValue(final String name) {
+      return values.get(name);
+    }
+  }
+
+  private final TestContext context = new TestContext();
+
+  // renders the first line on page 12 of 345
+  private String render(final String template) {
+    return new TextTemplate(template).render(new StringBuilder(), 0, 12, 345, context);
+  }
+
+  @Test
+  public void testLiteral() {
+    assertEquals("Plain text", render("Plain text"));
+    assertEquals("", render(""));
+  }
+
+  @Test
+  public void testPageFormats() {
+    assertEquals("12/345", render("{page}/{pages}"));
+    assertEquals("xii/CCCXLV", render("{page,r}/{pages,R}"));
+    assertEquals("l/GGGGGGGGGGGGGG", render("{page,a}/{pages,A}"));
+    assertEquals("0012/345", render("{page,4}/{pages,2}"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidPageFormat() {
+    new TextTemplate("{page,x}");
+  }
+
+  @Test
+  public void testFileNames() {
+    assertEquals("dir/sub/file.pdf, file.pdf", render("{pathname}, {filename}"));
+  }
+
+  @Test
+  public void testDate() {
+    assertEquals("Year " + Year.now(), render("Year {date,yyyy}"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidDatePattern() {
+    new TextTemplate("{date,qqqqqq}");
+  }
+
+  @Test
+  public void testMetadata() {
+    context.metadata.put("Title", "Report");
+    assertEquals("Report, ", render("{meta,Title}, {meta,Author}"));
+  }
+
+  @Test
+  public void testValues() {
+    context.values.put("ref", "A-1");
+    assertEquals("Ref: A-1", render("Ref: {ref}"));
+  }
+
+  @Test
+  public void testUndefinedValues() {
+    assertEquals("Ref: {draft} pxii", render("Ref: {draft} p{page,r}"));
+    assertEquals("{a,b} {x y}", render("{a,b} {x y}"));
+  }
+
+  @Test
+  public void testBraces() {
+    assertEquals("{ }", render("{ }"));
+    assertEquals("{}", render("{}"));
+    assertEquals("{12}", render("{{page}}"));
+    assertEquals("{page", render("{page"));
+    assertEquals("page}", render("page}"));
+  }
+
+  @Test
+  public void testLines() {
+    final TextTemplate template = new TextTemplate("{page}^^{pages}");
+    final StringBuilder buffer = new StringBuilder();
+    assertEquals(3, template.getNumberLines());
+    assertEquals("12", template.render(buffer, 0, 12, 345, context));
+    assertEquals("", template.render(buffer, 1, 12, 345, context));
+    assertEquals("345", template.render(buffer, 2, 12, 345, context));
+  }
+}